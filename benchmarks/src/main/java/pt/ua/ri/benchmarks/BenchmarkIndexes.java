@@ -0,0 +1,52 @@
+package pt.ua.ri.benchmarks;
+
+import pt.ua.ri.config.Configuration;
+import pt.ua.ri.document.Document;
+import pt.ua.ri.document.EuroParlSchema;
+import pt.ua.ri.index.AbstractIndex;
+import pt.ua.ri.index.PostingFormat;
+import pt.ua.ri.index.proximity.ProximityIndex;
+import pt.ua.ri.tokenizer.StreamTokenizer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Index set-up shared by the benchmarks. Indexes live in temporary directories removed on tear down.
+ *
+ * @author tiago.novo
+ */
+final class BenchmarkIndexes {
+
+    private BenchmarkIndexes() {
+    }
+
+    static Path newIndexDirectory() throws IOException {
+        return Files.createTempDirectory("ri-benchmark");
+    }
+
+    static ProximityIndex<EuroParlSchema> newIndex(final Path directory,
+            final PostingFormat postingFormat,
+            final long ramBufferMB) throws IOException {
+        final Configuration<EuroParlSchema> conf = new Configuration<>(EuroParlSchema.instance());
+        conf.setIndexPath(directory.toAbsolutePath());
+        conf.setPostingFormat(postingFormat);
+        conf.setRamBufferSizeMB(ramBufferMB);
+        return new ProximityIndex<>(conf, new StreamTokenizer());
+    }
+
+    static ProximityIndex<EuroParlSchema> buildIndex(final Path directory,
+            final PostingFormat postingFormat,
+            final List<Document<EuroParlSchema>> documents) throws IOException {
+        final ProximityIndex<EuroParlSchema> index = newIndex(directory, postingFormat, 64);
+        index(index, documents);
+        index.finish();
+        return index;
+    }
+
+    static void index(final AbstractIndex<EuroParlSchema> index, final List<Document<EuroParlSchema>> documents) {
+        documents.forEach(index::index);
+    }
+}
@@ -0,0 +1,66 @@
+package pt.ua.ri.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pt.ua.ri.document.EuroParlSchema;
+import pt.ua.ri.index.AbstractIndex;
+import pt.ua.ri.index.PostingFormat;
+import pt.ua.ri.index.PostingsCursor;
+import pt.ua.ri.utils.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading one posting list per operation, for Zipf-distributed terms: fully decoded to an
+ * {@link pt.ua.ri.index.IndexTuple} and walked through a {@link PostingsCursor}.
+ *
+ * @author tiago.novo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecodeBenchmark {
+
+    @Param({"20000"}) int vocabularySize;
+    @Param({"1.0"}) double skew;
+    @Param({"10000"}) int documents;
+    @Param({"TEXT", "BINARY"}) PostingFormat postingFormat;
+
+    private AbstractIndex<EuroParlSchema> index;
+    private Path directory;
+    private String[] terms;
+    private int next;
+
+    @Setup public void setUp() throws IOException {
+        final SyntheticCorpus corpus = new SyntheticCorpus(vocabularySize, skew, 42);
+        directory = BenchmarkIndexes.newIndexDirectory();
+        index = BenchmarkIndexes.buildIndex(directory, postingFormat, corpus.documents(documents));
+        final Random random = new Random(7);
+        terms = new String[4096];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = corpus.nextTerm(random);
+        }
+    }
+
+    @TearDown public void tearDown() {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark public Object decode() {
+        return index.get(terms[next++ & (terms.length - 1)]);
+    }
+
+    @Benchmark public void iterate(final Blackhole blackhole) {
+        index.getPostings(terms[next++ & (terms.length - 1)]).ifPresent(cursor -> {
+            while (cursor.next() != PostingsCursor.NO_MORE_DOCS) {
+                blackhole.consume(cursor.weight());
+            }
+        });
+    }
+}
@@ -0,0 +1,55 @@
+package pt.ua.ri.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pt.ua.ri.document.Document;
+import pt.ua.ri.document.EuroParlSchema;
+import pt.ua.ri.index.AbstractIndex;
+import pt.ua.ri.index.PostingFormat;
+import pt.ua.ri.utils.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AbstractIndex#index} of one document per operation. The index is recreated every iteration and flushes
+ * segments to disk whenever the RAM budget fills, as it would on a real corpus.
+ *
+ * @author tiago.novo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexBenchmark {
+
+    @Param({"20000", "200000"}) int vocabularySize;
+    @Param({"0.8", "1.1"}) double skew;
+    @Param({"16"}) long ramBufferMB;
+
+    private List<Document<EuroParlSchema>> documents;
+    private AbstractIndex<EuroParlSchema> index;
+    private Path directory;
+    private int next;
+
+    @Setup(Level.Trial) public void generate() {
+        documents = new SyntheticCorpus(vocabularySize, skew, 42).documents(5000);
+    }
+
+    @Setup(Level.Iteration) public void setUp() throws IOException {
+        directory = BenchmarkIndexes.newIndexDirectory();
+        index = BenchmarkIndexes.newIndex(directory, PostingFormat.BINARY, ramBufferMB);
+    }
+
+    @TearDown(Level.Iteration) public void tearDown() {
+        index.clear();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark public int index() {
+        return index.index(documents.get(next++ % documents.size()));
+    }
+}
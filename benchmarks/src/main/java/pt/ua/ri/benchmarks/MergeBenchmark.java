@@ -0,0 +1,53 @@
+package pt.ua.ri.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pt.ua.ri.document.EuroParlSchema;
+import pt.ua.ri.index.AbstractIndex;
+import pt.ua.ri.index.PostingFormat;
+import pt.ua.ri.utils.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AbstractIndex#finish()}: flushing the last segments and the k-way merge of the sub-indexes. A small RAM
+ * budget makes indexing leave several sub-indexes behind.
+ *
+ * @author tiago.novo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MergeBenchmark {
+
+    @Param({"20000"}) int vocabularySize;
+    @Param({"1.0"}) double skew;
+    @Param({"5000"}) int documents;
+    @Param({"TEXT", "BINARY"}) PostingFormat postingFormat;
+
+    private SyntheticCorpus corpus;
+    private AbstractIndex<EuroParlSchema> index;
+    private Path directory;
+
+    @Setup(Level.Trial) public void generate() {
+        corpus = new SyntheticCorpus(vocabularySize, skew, 42);
+    }
+
+    @Setup(Level.Invocation) public void setUp() throws IOException {
+        directory = BenchmarkIndexes.newIndexDirectory();
+        index = BenchmarkIndexes.newIndex(directory, postingFormat, 1);
+        BenchmarkIndexes.index(index, corpus.documents(documents));
+    }
+
+    @TearDown(Level.Invocation) public void tearDown() {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark public void merge() {
+        index.finish();
+    }
+}
@@ -0,0 +1,80 @@
+package pt.ua.ri.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pt.ua.ri.document.Document;
+import pt.ua.ri.document.EuroParlSchema;
+import pt.ua.ri.reader.FileParser;
+import pt.ua.ri.utils.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link EuroParlSchema#fileParser} over one synthetic Europarl file per operation. Besides files per second, the
+ * {@code megabytes} counter reports the parse throughput in MB/s.
+ *
+ * @author tiago.novo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    private static final double MEGABYTE = 1 << 20;
+
+    @Param({"20000"}) int vocabularySize;
+    @Param({"1.1"}) double skew;
+
+    private Path directory;
+    private List<Path> files;
+    private long[] sizes;
+    private int next;
+
+    @Setup(Level.Trial) public void setUp() throws IOException {
+        directory = Files.createTempDirectory("ri-benchmark");
+        new SyntheticCorpus(vocabularySize, skew, 42).writeFiles(directory, 4000);
+        try (final Stream<Path> paths = Files.list(directory)) {
+            files = paths.sorted().collect(Collectors.toList());
+        }
+        sizes = new long[files.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = Files.size(files.get(i));
+        }
+    }
+
+    @TearDown(Level.Trial) public void tearDown() {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark public void parse(final Bytes bytes, final Blackhole blackhole) {
+        final int file = next++ % files.size();
+        final FileParser<EuroParlSchema> parser = EuroParlSchema.instance().fileParser(files.get(file));
+        while (parser.hasNext()) {
+            final Document<EuroParlSchema> document = parser.next();
+            blackhole.consume(document);
+        }
+        bytes.megabytes += sizes[file] / MEGABYTE;
+    }
+
+    /**
+     * Reported by JMH as a rate, i.e. megabytes parsed per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        public double megabytes;
+
+        @Setup(Level.Iteration) public void reset() {
+            megabytes = 0;
+        }
+    }
+}
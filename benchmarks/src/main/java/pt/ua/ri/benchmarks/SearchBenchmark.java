@@ -0,0 +1,54 @@
+package pt.ua.ri.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pt.ua.ri.document.EuroParlSchema;
+import pt.ua.ri.index.PostingFormat;
+import pt.ua.ri.search.FieldSearch;
+import pt.ua.ri.search.Search;
+import pt.ua.ri.utils.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ranked retrieval of the top {@code k} documents for free text queries of Zipf-distributed terms.
+ *
+ * @author tiago.novo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"20000"}) int vocabularySize;
+    @Param({"1.0"}) double skew;
+    @Param({"10000"}) int documents;
+    @Param({"3"}) int queryTerms;
+    @Param({"10", "1000"}) int k;
+
+    private Search<EuroParlSchema> search;
+    private Path directory;
+    private List<String> queries;
+    private int next;
+
+    @Setup public void setUp() throws IOException {
+        final SyntheticCorpus corpus = new SyntheticCorpus(vocabularySize, skew, 42);
+        directory = BenchmarkIndexes.newIndexDirectory();
+        search = new FieldSearch<>(
+                BenchmarkIndexes.buildIndex(directory, PostingFormat.BINARY, corpus.documents(documents)));
+        queries = corpus.queries(1024, queryTerms);
+    }
+
+    @TearDown public void tearDown() {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark public Object search() {
+        return search.search(queries.get(next++ % queries.size()), k);
+    }
+}
@@ -0,0 +1,57 @@
+package pt.ua.ri.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.tartarus.snowball.SnowballStemmer;
+import org.tartarus.snowball.ext.englishStemmer;
+import pt.ua.ri.tokenizer.StemmingFunction;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stemming one Zipf-distributed word per operation from several threads: through a shared {@link StemmingFunction}
+ * and, as a baseline, with a Snowball stemmer per thread and no memo.
+ *
+ * @author tiago.novo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class StemmerBenchmark {
+
+    @Param({"20000"}) int vocabularySize;
+    @Param({"1.1"}) double skew;
+
+    private StemmingFunction stemmingFunction;
+    private String[] words;
+
+    @Setup public void setUp() {
+        final SyntheticCorpus corpus = new SyntheticCorpus(vocabularySize, skew, 42);
+        final Random random = new Random(7);
+        words = new String[1 << 16];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = corpus.nextTerm(random);
+        }
+        stemmingFunction = new StemmingFunction();
+    }
+
+    @Benchmark public CharSequence memoized(final Cursor cursor) {
+        return stemmingFunction.apply(words[cursor.next++ & (words.length - 1)]);
+    }
+
+    @Benchmark public String snowball(final Cursor cursor) {
+        cursor.stemmer.setCurrent(words[cursor.next++ & (words.length - 1)]);
+        cursor.stemmer.stem();
+        return cursor.stemmer.getCurrent();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        final SnowballStemmer stemmer = new englishStemmer();
+        int next;
+    }
+}
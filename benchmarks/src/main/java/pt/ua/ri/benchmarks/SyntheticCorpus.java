@@ -0,0 +1,204 @@
+package pt.ua.ri.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import pt.ua.ri.document.Document;
+import pt.ua.ri.document.DocumentProperties;
+import pt.ua.ri.document.EuroParlSchema;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Deterministic Europarl-like corpus: speaker interventions made of sentences whose words are drawn from a synthetic
+ * vocabulary with a Zipf distribution, so a few terms have very long posting lists and most are rare.
+ *
+ * @author tiago.novo
+ */
+public final class SyntheticCorpus {
+
+    private static final int MIN_WORD_LENGTH = 3;
+    private static final int MAX_WORD_LENGTH = 12;
+    private static final int WORDS_PER_SENTENCE = 18;
+    private static final int SENTENCES_PER_DOCUMENT = 6;
+    private static final int DOCUMENTS_PER_FILE = 40;
+    private static final int SPEAKERS = 700;
+
+    private final String[] vocabulary;
+    private final double[] cumulative;
+    private final long seed;
+
+    /**
+     * @param vocabularySize number of distinct terms.
+     * @param skew           Zipf exponent; the term of rank r is drawn with probability proportional to 1/r^skew.
+     * @param seed           seed of every random choice, the same arguments always produce the same corpus.
+     */
+    public SyntheticCorpus(final int vocabularySize, final double skew, final long seed) {
+        checkArgument(vocabularySize > 0, "Vocabulary must not be empty");
+        checkArgument(skew >= 0, "Skew must not be negative");
+        this.seed = seed;
+        this.vocabulary = newVocabulary(vocabularySize, new Random(seed));
+        this.cumulative = new double[vocabularySize];
+        double sum = 0.0;
+        for (int rank = 0; rank < vocabularySize; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, skew);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < vocabularySize; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    private static String[] newVocabulary(final int size, final Random random) {
+        final Set<String> words = new LinkedHashSet<>(size);
+        final StringBuilder sb = new StringBuilder(MAX_WORD_LENGTH);
+        while (words.size() < size) {
+            sb.setLength(0);
+            final int length = MIN_WORD_LENGTH + random.nextInt(MAX_WORD_LENGTH - MIN_WORD_LENGTH + 1);
+            for (int i = 0; i < length; i++) {
+                sb.append((char) ('a' + random.nextInt(26)));
+            }
+            words.add(sb.toString());
+        }
+        return words.toArray(new String[size]);
+    }
+
+    /**
+     * @return a term drawn from the Zipf distribution.
+     */
+    public String nextTerm(final Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return vocabulary[Math.min(index, vocabulary.length - 1)];
+    }
+
+    public List<Document<EuroParlSchema>> documents(final int count) {
+        final List<Document<EuroParlSchema>> documents = new ArrayList<>(count);
+        for (final Intervention intervention : interventions(count)) {
+            final Map<String, Serializable> properties = ImmutableMap.<String, Serializable>builder()
+                    .put("FILENAME", intervention.filename)
+                    .put("DATE", intervention.filename.substring(3, 11))
+                    .put("CHAPTER_ID", intervention.chapter)
+                    .put("SPEAKER_ID", Integer.toString(intervention.speaker))
+                    .put("SPEAKER_NAME", speakerName(intervention.speaker))
+                    .put("LANGUAGE", "EN")
+                    .build();
+            documents.add(new Document<>(new DocumentProperties<>(EuroParlSchema.instance(), properties),
+                    intervention.lines));
+        }
+        return documents;
+    }
+
+    /**
+     * @return {@code count} queries of {@code terms} Zipf-distributed terms each.
+     */
+    public List<String> queries(final int count, final int terms) {
+        final Random random = new Random(seed + 2);
+        final List<String> queries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final StringJoiner query = new StringJoiner(" ");
+            for (int j = 0; j < terms; j++) {
+                query.add(nextTerm(random));
+            }
+            queries.add(query.toString());
+        }
+        return queries;
+    }
+
+    /**
+     * Writes {@code count} documents as Europarl files (ep-YY-MM-DD-NNN.txt) to {@code directory}.
+     *
+     * @return the total number of bytes written.
+     */
+    public long writeFiles(final Path directory, final int count) throws IOException {
+        checkNotNull(directory);
+        Files.createDirectories(directory);
+        final List<Intervention> interventions = interventions(count);
+        long bytes = 0;
+        for (int file = 0; file * DOCUMENTS_PER_FILE < count; file++) {
+            final Path path = directory.resolve(filename(file));
+            try (final BufferedWriter writer = Files.newBufferedWriter(path, UTF_8)) {
+                final int end = Math.min(count, (file + 1) * DOCUMENTS_PER_FILE);
+                String chapter = null;
+                for (final Intervention intervention : interventions.subList(file * DOCUMENTS_PER_FILE, end)) {
+                    if (!intervention.chapter.equals(chapter)) {
+                        chapter = intervention.chapter;
+                        writer.write("<CHAPTER ID=" + chapter + ">\n");
+                        writer.write("Chapter title " + chapter + "\n");
+                    }
+                    writer.write(String.format("<SPEAKER ID=%d NAME=\"%s\" LANGUAGE=\"EN\">\n",
+                            intervention.speaker, speakerName(intervention.speaker)));
+                    for (final String line : intervention.lines) {
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                }
+            }
+            bytes += Files.size(path);
+        }
+        return bytes;
+    }
+
+    private List<Intervention> interventions(final int count) {
+        final Random random = new Random(seed + 1);
+        final List<Intervention> interventions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            interventions.add(new Intervention(filename(i / DOCUMENTS_PER_FILE),
+                    Integer.toString(1 + (i % DOCUMENTS_PER_FILE) / 8), random.nextInt(SPEAKERS), paragraph(random)));
+        }
+        return interventions;
+    }
+
+    private List<String> paragraph(final Random random) {
+        final ImmutableList.Builder<String> lines = ImmutableList.builder();
+        final StringBuilder sb = new StringBuilder();
+        for (int s = 0; s < SENTENCES_PER_DOCUMENT; s++) {
+            sb.setLength(0);
+            final int words = WORDS_PER_SENTENCE / 2 + random.nextInt(WORDS_PER_SENTENCE);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) {
+                    sb.append(' ');
+                }
+                sb.append(nextTerm(random));
+            }
+            lines.add(sb.append('.').toString());
+        }
+        return lines.build();
+    }
+
+    private static String filename(final int file) {
+        // one sitting per day, starting on 2000-01-01
+        final int day = file % 28 + 1;
+        final int month = (file / 28) % 12 + 1;
+        final int year = file / (28 * 12);
+        return String.format("ep-%02d-%02d-%02d-%03d.txt", year, month, day, file % 1000);
+    }
+
+    private static String speakerName(final int speaker) {
+        return "SPEAKER " + speaker;
+    }
+
+    private static final class Intervention {
+        private final String filename;
+        private final String chapter;
+        private final int speaker;
+        private final List<String> lines;
+
+        private Intervention(final String filename, final String chapter, final int speaker, final List<String> lines) {
+            this.filename = filename;
+            this.chapter = chapter;
+            this.speaker = speaker;
+            this.lines = lines;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package pt.ua.ri.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pt.ua.ri.document.Document;
+import pt.ua.ri.document.EuroParlSchema;
+import pt.ua.ri.tokenizer.StreamTokenizer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link StreamTokenizer#tokenize} over one speaker intervention per operation.
+ *
+ * @author tiago.novo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizerBenchmark {
+
+    @Param({"20000", "200000"}) int vocabularySize;
+    @Param({"0.8", "1.1"}) double skew;
+
+    private List<Document<EuroParlSchema>> documents;
+    private StreamTokenizer tokenizer;
+    private int next;
+
+    @Setup public void setUp() {
+        documents = new SyntheticCorpus(vocabularySize, skew, 42).documents(2000);
+        tokenizer = new StreamTokenizer();
+    }
+
+    @Benchmark public void tokenize(final Blackhole blackhole) {
+        final Document<EuroParlSchema> document = documents.get(next++ % documents.size());
+        tokenizer.tokenize(document.stream()).forEach(blackhole::consume);
+    }
+}
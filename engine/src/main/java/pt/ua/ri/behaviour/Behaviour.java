@@ -17,19 +17,21 @@
  */
 package pt.ua.ri.behaviour;
 
-import com.google.common.base.Converter;
 import pt.ua.ri.config.Configuration;
-import pt.ua.ri.document.DocumentProperties;
 import pt.ua.ri.document.DocumentSchema;
 import pt.ua.ri.index.Index;
 import pt.ua.ri.index.field.FieldIndex;
 import pt.ua.ri.index.proximity.ProximityIndex;
 import pt.ua.ri.index.simple.SimpleIndex;
+import pt.ua.ri.search.FieldSearch;
+import pt.ua.ri.search.ResultCache;
+import pt.ua.ri.search.Search;
 import pt.ua.ri.tokenizer.*;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Tiago Novo <tmnovo at ua.pt>
@@ -37,31 +39,45 @@ import java.util.HashSet;
 public abstract class Behaviour<S extends DocumentSchema<S>> implements Runnable {
 
     final Tokenizer tok;
+    final StreamTokenizer st;
     final Index<S> idx;
+    // null unless stemming
+    final StemmingFunction stemmer;
 
     Behaviour(Configuration<S> conf) throws IOException {
-        Tokenizer tk = new WordTokenizer();
-        final StreamTokenizer st = new StreamTokenizer();
+        // both tokenizers hand out the same token, and term id, for the same term
+        final TermDictionary dictionary = new TermDictionary();
+        Tokenizer tk = new WordTokenizer(dictionary, conf.getSurfaceForms());
+        st = new StreamTokenizer(dictionary, conf.getSurfaceForms());
         if (conf.isUsingStopwords()) {
             final HashSet<String> stopwords = new HashSet<>(Files.readAllLines(conf.getStopwordsFile()));
             tk = new StopWordFilter(tk, stopwords);
-            st.addFilter(stopwords::contains);
+            st.addFilter(word -> !stopwords.contains(word));
         }
         if (conf.isUsingPorterStemmer()) {
-            tk = new PorterStemmerNormalizer(tk);
-            st.addNormalization(new StemmingFunction());
+            // one stage, and one memo of stems, for both tokenizers
+            stemmer = new StemmingFunction(conf.getSurfaceForms());
+            tk = new PorterStemmerNormalizer(tk, stemmer);
+            st.addNormalization(stemmer);
+        } else {
+            stemmer = null;
         }
         this.tok = tk;
-        final Converter<String, DocumentProperties<S>> converter = conf.getSchema().lineParser();
         Index<S> index;
-        index = conf.usePositions() ?
-                new ProximityIndex<>(conf.getIndexPath(), st, converter) :
-                new SimpleIndex<>(conf.getIndexPath(), st, converter);
-        idx = conf.isFieldEnabled() ? new FieldIndex<>(index, conf.getSchema().fieldChecker()) : index;
+        index = conf.usePositions() ? new ProximityIndex<>(conf, st) : new SimpleIndex<>(conf, st);
+        idx = conf.isFieldEnabled() ? new FieldIndex<>(index, conf.getSchema().getFields()) : index;
     }
 
     public abstract void action();
 
+    Search<S> newSearch(final Configuration<S> conf) {
+        final ResultCache cache = conf.getResultCacheSize() > 0 ?
+                                  new ResultCache(conf.getResultCacheSize(), conf.getResultCacheTimeToLive(),
+                                          TimeUnit.SECONDS) :
+                                  null;
+        return new FieldSearch<>(idx, tok, cache);
+    }
+
     @Override public final void run() {
         action();
     }
@@ -22,7 +22,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import pt.ua.ri.config.Configuration;
 import pt.ua.ri.document.DocumentSchema;
-import pt.ua.ri.search.FieldSearch;
 import pt.ua.ri.search.Search;
 import pt.ua.ri.search.results.Result;
 
@@ -30,6 +29,7 @@ import java.io.IOException;
 
 public class SearchBehaviour<S extends DocumentSchema<S>> extends Behaviour<S> {
 
+    private static final int RESULTS_SHOWN = 20;
     private final Search<S> s;
     private final Iterable<String> queries;
     private final Logger logger = LoggerFactory.getLogger(SearchBehaviour.class);
@@ -37,22 +37,19 @@ public class SearchBehaviour<S extends DocumentSchema<S>> extends Behaviour<S> {
     public SearchBehaviour(Configuration<S> conf, Iterable<String> queries) throws IOException {
         super(conf);
         this.queries = queries;
-        this.s = new FieldSearch<>(idx, tok);
+        this.s = newSearch(conf);
     }
 
     @Override public void action() {
         for (String query : queries) {
             Stopwatch sw = Stopwatch.createStarted();
 
-            Iterable<Result> results = s.search(query);
+            Iterable<Result> results = s.search(query, RESULTS_SHOWN);
             sw.stop();
             logger.info("Results for: {} ( {} )", query, sw);
             int i = 0;
             logger.info("%8s | %-30s | %10s\n", "#", "Score", "Document");
             for (Result r : results) {
-                if (i >= 20) {
-                    break;
-                }
                 logger.info("%8d | %-30s | %9.5f%%\n", ++i, idx.getDocumentName(r.getDocId()), r.getScore() * 100.0f);
             }
         }
@@ -10,6 +10,14 @@ import pt.ua.ri.reader.CorpusAdapter;
 
 import java.io.IOException;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
 import java.util.stream.Stream;
 
 import static pt.ua.ri.utils.StaticUtils.estimatedUsedMemory;
@@ -31,30 +39,76 @@ public class StreamIndexBehaviour<S extends DocumentSchema<S>> extends Behaviour
     };
     private final static Logger logger = LoggerFactory.getLogger(StreamIndexBehaviour.class);
 
-    private final Stream<Document> documentStream;
+    private static <S extends DocumentSchema<S>> Document<S> nextDocument(final Iterator<Document<S>> documents) {
+        synchronized (documents) {
+            return documents.hasNext() ? documents.next() : null;
+        }
+    }
+
+    private final Stream<Document<S>> documentStream;
+    private final int threads;
 
     public StreamIndexBehaviour(Configuration<S> conf) throws IOException {
         super(conf);
-        this.documentStream = CorpusAdapter.of(conf.getSchema()).streamCorpus(conf.getCorpusPath());
+        // parsing runs ahead of indexing, with a couple of files buffered per reader thread
+        this.documentStream = CorpusAdapter.of(conf.getSchema())
+                .streamCorpus(conf.getCorpusPath(), conf.getReaderThreads(), 2 * conf.getReaderThreads());
+        this.threads = conf.getIndexingThreads();
     }
 
     @Override public void action() {
         logger.info("Starting Indexing");
         final Stopwatch sw = Stopwatch.createStarted();
 
-        documentStream.mapToInt(idx::index).forEach(docId -> {
+        final IntConsumer progress = docId -> {
             if (docId % 2500 == 0) {
                 logger.info("MEM=[{}], TIME=[{}], DOCS={}", MEMORY_ASYNC, sw, docId);
             } else {
                 logger.trace("MEM=[{}], TIME=[{}], DOCS={}", MEMORY_ASYNC, sw, docId);
             }
-        });
+        };
+        try (final Stream<Document<S>> documents = documentStream) {
+            if (threads > 1) {
+                indexInParallel(progress);
+            } else {
+                documents.mapToInt(idx::index).forEach(progress);
+            }
+        }
 
         logger.info("Finishing TIME={}, DOCS={}, MEM={}", sw, idx.numberOfDocuments(), MEMORY_ASYNC);
+        logger.info("TERMS={}, SURFACE_FORMS={}, HIT_RATE={}", st.getDictionary().size(), st.getSurfaceForms().size(),
+                st.getSurfaceForms().stats().hitRate());
+        if (stemmer != null) {
+            logger.info("STEM_HIT_RATE={}, STEMMED={}", stemmer.stats().hitRate(), stemmer.stats().missCount());
+        }
         idx.finish();
         sw.stop();
         logger.info("Finished {}", sw);
     }
 
+    private void indexInParallel(final IntConsumer progress) {
+        logger.info("Indexing with {} threads", threads);
+        final Iterator<Document<S>> documents = documentStream.iterator();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<?>> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.add(executor.submit(() -> {
+                Document<S> document;
+                while ((document = nextDocument(documents)) != null) {
+                    progress.accept(idx.index(document));
+                }
+            }));
+        }
+        executor.shutdown();
+        try {
+            for (final Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException | ExecutionException ex) {
+            executor.shutdownNow();
+            throw new RuntimeException(ex);
+        }
+    }
+
 
 }
@@ -1,26 +1,65 @@
 package pt.ua.ri.behaviour;
 
+import com.google.common.base.Stopwatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import pt.ua.ri.config.Configuration;
 import pt.ua.ri.document.DocumentSchema;
-import pt.ua.ri.search.FieldSearch;
-import pt.ua.ri.search.Search;
+import pt.ua.ri.search.SearchExecutor;
+import pt.ua.ri.search.results.Result;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static java.lang.String.format;
 
 /**
+ * Runs every query concurrently on the search thread pool and logs each ranking as soon as it is ready.
+ *
  * @author tiago.novo
  */
 public class StreamSearchBehaviour<S extends DocumentSchema<S>> extends Behaviour<S> {
+    private static final int RESULTS_SHOWN = 20;
+    private static final Logger logger = LoggerFactory.getLogger(StreamSearchBehaviour.class);
     private final Iterable<String> queries;
-    private final Search<S> searcher;
+    private final SearchExecutor<S> executor;
 
-    StreamSearchBehaviour(final Configuration<S> conf, Iterable<String> queries) throws IOException {
+    public StreamSearchBehaviour(final Configuration<S> conf, Iterable<String> queries) throws IOException {
         super(conf);
         this.queries = queries;
-        this.searcher = new FieldSearch<>(idx);
+        this.executor = new SearchExecutor<>(newSearch(conf), conf.getSearchThreads());
     }
 
     @Override public void action() {
+        final Stopwatch sw = Stopwatch.createStarted();
+        try (final SearchExecutor<S> ex = executor) {
+            CompletableFuture<?> all = CompletableFuture.completedFuture(null);
+            for (final String query : queries) {
+                final Stopwatch queryWatch = Stopwatch.createStarted();
+                all = CompletableFuture.allOf(all, ex.submit(query, RESULTS_SHOWN)
+                        .whenComplete((results, error) -> {
+                            if (error != null) {
+                                logger.warn("Error searching for {}", query, error);
+                            } else {
+                                log(query, results, queryWatch.stop());
+                            }
+                        }));
+            }
+            all.exceptionally(error -> null).join();
+        }
+        logger.info("Searched every query in {}", sw.stop());
+    }
 
+    private void log(final String query, final List<Result> results, final Stopwatch sw) {
+        // a single message per query, so concurrent rankings are not interleaved
+        final StringBuilder sb = new StringBuilder(format("Results for: %s ( %s )%n", query, sw));
+        sb.append(format("%8s | %-30s | %10s%n", "#", "Document", "Score"));
+        int i = 0;
+        for (final Result r : results) {
+            sb.append(format("%8d | %-30s | %9.5f%%%n", ++i, idx.getDocumentName(r.getDocId()),
+                    r.getScore() * 100.0f));
+        }
+        logger.info(sb.toString().trim());
     }
 }
@@ -17,7 +17,9 @@
 package pt.ua.ri.config;
 
 import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
 import pt.ua.ri.document.DocumentSchema;
+import pt.ua.ri.index.PostingFormat;
 
 import java.io.IOException;
 import java.nio.file.FileAlreadyExistsException;
@@ -34,15 +36,29 @@ import static java.nio.file.StandardOpenOption.*;
  * @author Tiago
  */
 public final class Configuration<S extends DocumentSchema<S>> {
-    public final static String DOCS_FILE = "docs.txt";
     public final static String PP_BASE_PATH_DEFAULT = System.getProperty("user.dir");
     public final static String PP_CORPUS_PATH_DEFAULT = Paths.get(PP_BASE_PATH_DEFAULT, "Europarl-v7-en").toString();
+    public final static long RAM_BUFFER_DEFAULT = Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 4);
+    public final static long POSTINGS_CACHE_DEFAULT = Math.min(64L << 20, Runtime.getRuntime().maxMemory() / 8);
+    public final static long SURFACE_FORMS_DEFAULT = 1L << 20;
+    public final static long DIVISION_SIZE_DEFAULT = 32L << 20;
     private final static String PP_BASE_PATH = "BASE_PATH";
     private final static String PP_CONF_FILE_PATH = "CONF_FILE";
     private final static String PP_CONF_FILE_PATH_DEFAULT = Paths.get(PP_BASE_PATH_DEFAULT, "config.xml").toString();
     private final static String PP_CORPUS_PATH = "CORPUS_PATH";
+    private final static String PP_DIVISION_MB = "DIVISION_MB";
     private final static String PP_INDEX_PATH = "INDEX_FOLDER";
     private final static String PP_INDEX_PATH_DEFAULT = Paths.get(PP_BASE_PATH_DEFAULT, "index").toString();
+    private final static String PP_INDEX_THREADS = "INDEX_THREADS";
+    private final static String PP_MEMORY_MAPPED = "MEMORY_MAPPED";
+    private final static String PP_POSTING_FORMAT = "POSTING_FORMAT";
+    private final static String PP_POSTINGS_CACHE_MB = "POSTINGS_CACHE_MB";
+    private final static String PP_RAM_BUFFER_MB = "RAM_BUFFER_MB";
+    private final static String PP_READER_THREADS = "READER_THREADS";
+    private final static String PP_RESULT_CACHE_MB = "RESULT_CACHE_MB";
+    private final static String PP_RESULT_CACHE_TTL = "RESULT_CACHE_TTL_SECONDS";
+    private final static String PP_SEARCH_THREADS = "SEARCH_THREADS";
+    private final static String PP_SURFACE_FORMS = "SURFACE_FORMS";
     private final static String PP_SW_FILE_PATH = "SW_FILE";
     private final static String PP_SW_FILE_PATH_DEFAULT = Paths.get(PP_BASE_PATH_DEFAULT, "stopwords.txt").toString();
     private final static String PP_USE_PS = "USE_PS";
@@ -62,6 +78,17 @@ public final class Configuration<S extends DocumentSchema<S>> {
     private Path stopWordsFile;
     private boolean usingStopwords;
     private boolean usingPorterstemmer;
+    private PostingFormat postingFormat;
+    private boolean memoryMapped;
+    private int indexingThreads;
+    private int searchThreads;
+    private int readerThreads;
+    private long ramBufferSize;
+    private long postingsCacheSize;
+    private long resultCacheSize;
+    private long resultCacheTimeToLive;
+    private long surfaceForms;
+    private long divisionSize;
 
     public Configuration(final S schema) throws IOException {
         this(schema, new Properties());
@@ -78,15 +105,39 @@ public final class Configuration<S extends DocumentSchema<S>> {
     private Configuration(final S schema, Properties configs) throws IOException {
         this.schema = schema;
         setBasePath(Paths.get(configs.getProperty(PP_BASE_PATH, PP_BASE_PATH_DEFAULT)));
-        setIndexPath(Paths.get(configs.getProperty(PP_INDEX_PATH, PP_INDEX_PATH_DEFAULT)));
+        // written relative to the base path
+        setIndexPath(getBasePath().resolve(configs.getProperty(PP_INDEX_PATH, PP_INDEX_PATH_DEFAULT)));
         this.configPath = getBasePath().relativize(
-                Paths.get(configs.getProperty(PP_CONF_FILE_PATH, PP_CONF_FILE_PATH_DEFAULT)));
+                getBasePath().resolve(configs.getProperty(PP_CONF_FILE_PATH, PP_CONF_FILE_PATH_DEFAULT)));
         this.usingStopwords = Boolean.parseBoolean(configs.getProperty(PP_USE_SW, Boolean.toString(false)));
         this.stopWordsFile = (this.usingStopwords) ?
                              Paths.get(configs.getProperty(PP_SW_FILE_PATH, PP_SW_FILE_PATH_DEFAULT)) :
                              null;
         this.usingPorterstemmer = Boolean.parseBoolean(configs.getProperty(PP_USE_PS, Boolean.toString(false)));
         this.corpusPath = Paths.get(configs.getProperty(PP_CORPUS_PATH, PP_CORPUS_PATH_DEFAULT));
+        this.postingFormat = PostingFormat.valueOf(
+                configs.getProperty(PP_POSTING_FORMAT, PostingFormat.BINARY.name()).toUpperCase());
+        this.memoryMapped = Boolean.parseBoolean(configs.getProperty(PP_MEMORY_MAPPED, Boolean.toString(false)));
+        this.indexingThreads = Integer.parseInt(configs.getProperty(PP_INDEX_THREADS, Integer.toString(1)));
+        this.readerThreads = Integer.parseInt(configs.getProperty(PP_READER_THREADS, Integer.toString(2)));
+        this.searchThreads = Integer.parseInt(configs.getProperty(PP_SEARCH_THREADS,
+                Integer.toString(Runtime.getRuntime().availableProcessors())));
+        this.ramBufferSize = configs.containsKey(PP_RAM_BUFFER_MB) ?
+                             Long.parseLong(configs.getProperty(PP_RAM_BUFFER_MB)) << 20 :
+                             RAM_BUFFER_DEFAULT;
+        this.postingsCacheSize = configs.containsKey(PP_POSTINGS_CACHE_MB) ?
+                                 Long.parseLong(configs.getProperty(PP_POSTINGS_CACHE_MB)) << 20 :
+                                 POSTINGS_CACHE_DEFAULT;
+        this.resultCacheSize = Long.parseLong(configs.getProperty(PP_RESULT_CACHE_MB, Long.toString(0))) << 20;
+        this.resultCacheTimeToLive = Long.parseLong(configs.getProperty(PP_RESULT_CACHE_TTL, Long.toString(600)));
+        this.surfaceForms = Long.parseLong(configs.getProperty(PP_SURFACE_FORMS, Long.toString(SURFACE_FORMS_DEFAULT)));
+        this.divisionSize = configs.containsKey(PP_DIVISION_MB) ?
+                            Long.parseLong(configs.getProperty(PP_DIVISION_MB)) << 20 :
+                            DIVISION_SIZE_DEFAULT;
+    }
+
+    public void enableMemoryMapping() {
+        this.memoryMapped = true;
     }
 
     public void enablePorterStemmer() {
@@ -124,6 +175,27 @@ public final class Configuration<S extends DocumentSchema<S>> {
         this.corpusPath = corpusPath;
     }
 
+    public int getIndexingThreads() {
+        return indexingThreads;
+    }
+
+    public void setIndexingThreads(int indexingThreads) {
+        Preconditions.checkArgument(indexingThreads > 0, "Must use at least one thread");
+        this.indexingThreads = indexingThreads;
+    }
+
+    public int getReaderThreads() {
+        return readerThreads;
+    }
+
+    /**
+     * @param readerThreads number of corpus files parsed at the same time while indexing.
+     */
+    public void setReaderThreads(int readerThreads) {
+        Preconditions.checkArgument(readerThreads > 0, "Must use at least one thread");
+        this.readerThreads = readerThreads;
+    }
+
     public Path getIndexPath() {
         return getBasePath().resolve(indexPath);
     }
@@ -132,10 +204,96 @@ public final class Configuration<S extends DocumentSchema<S>> {
         this.indexPath = getBasePath().relativize(indexFolder);
     }
 
+    public PostingFormat getPostingFormat() {
+        return postingFormat;
+    }
+
+    public void setPostingFormat(PostingFormat postingFormat) {
+        this.postingFormat = postingFormat;
+    }
+
+    public long getPostingsCacheSize() {
+        return postingsCacheSize;
+    }
+
+    /**
+     * @param megabytes memory used to keep the stored posting lists of frequently searched terms, 0 disables the cache.
+     */
+    public void setPostingsCacheSizeMB(long megabytes) {
+        Preconditions.checkArgument(megabytes >= 0, "Cache size must not be negative");
+        this.postingsCacheSize = megabytes << 20;
+    }
+
+    public long getDivisionSize() {
+        return divisionSize;
+    }
+
+    /**
+     * @param megabytes encoded postings written to each division file of the index before the next one is started.
+     */
+    public void setDivisionSizeMB(long megabytes) {
+        Preconditions.checkArgument(megabytes > 0, "Divisions must not be empty");
+        this.divisionSize = megabytes << 20;
+    }
+
+    public long getRamBufferSize() {
+        return ramBufferSize;
+    }
+
+    public void setRamBufferSizeMB(long megabytes) {
+        Preconditions.checkArgument(megabytes > 0, "RAM buffer must not be empty");
+        this.ramBufferSize = megabytes << 20;
+    }
+
+    public long getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    /**
+     * @param megabytes memory used to keep the rankings of recent queries, 0 disables the cache.
+     */
+    public void setResultCacheSizeMB(long megabytes) {
+        Preconditions.checkArgument(megabytes >= 0, "Cache size must not be negative");
+        this.resultCacheSize = megabytes << 20;
+    }
+
+    /**
+     * @return seconds a cached ranking is kept.
+     */
+    public long getResultCacheTimeToLive() {
+        return resultCacheTimeToLive;
+    }
+
+    public void setResultCacheTimeToLive(long seconds) {
+        Preconditions.checkArgument(seconds > 0, "Time to live must be positive");
+        this.resultCacheTimeToLive = seconds;
+    }
+
     public S getSchema() {
         return schema;
     }
 
+    public int getSearchThreads() {
+        return searchThreads;
+    }
+
+    public void setSearchThreads(int searchThreads) {
+        Preconditions.checkArgument(searchThreads > 0, "Must use at least one thread");
+        this.searchThreads = searchThreads;
+    }
+
+    /**
+     * @return surface forms each tokenizer remembers, and stems the stemmer remembers, 0 if unbounded.
+     */
+    public long getSurfaceForms() {
+        return surfaceForms;
+    }
+
+    public void setSurfaceForms(long surfaceForms) {
+        Preconditions.checkArgument(surfaceForms >= 0, "Cache size must not be negative");
+        this.surfaceForms = surfaceForms;
+    }
+
     public Path getStopwordsFile() {
         return basePath.resolve(stopWordsFile);
     }
@@ -144,6 +302,10 @@ public final class Configuration<S extends DocumentSchema<S>> {
         return false;
     }
 
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
     public boolean isUsingPorterStemmer() {
         return usingPorterstemmer;
     }
@@ -165,6 +327,17 @@ public final class Configuration<S extends DocumentSchema<S>> {
                 .add("stopWordsFile", stopWordsFile)
                 .add("usingStopwords", usingStopwords)
                 .add("usingPorterstemmer", usingPorterstemmer)
+                .add("postingFormat", postingFormat)
+                .add("memoryMapped", memoryMapped)
+                .add("indexingThreads", indexingThreads)
+                .add("readerThreads", readerThreads)
+                .add("searchThreads", searchThreads)
+                .add("ramBufferSize", ramBufferSize)
+                .add("postingsCacheSize", postingsCacheSize)
+                .add("resultCacheSize", resultCacheSize)
+                .add("resultCacheTimeToLive", resultCacheTimeToLive)
+                .add("surfaceForms", surfaceForms)
+                .add("divisionSize", divisionSize)
                 .toString();
     }
 
@@ -183,6 +356,17 @@ public final class Configuration<S extends DocumentSchema<S>> {
             p.setProperty(PP_SW_FILE_PATH, getStopwordsFile().toString());
         }
         p.setProperty(PP_CORPUS_PATH, getCorpusPath().toString());
+        p.setProperty(PP_POSTING_FORMAT, postingFormat.name());
+        p.setProperty(PP_MEMORY_MAPPED, Boolean.toString(memoryMapped));
+        p.setProperty(PP_INDEX_THREADS, Integer.toString(indexingThreads));
+        p.setProperty(PP_READER_THREADS, Integer.toString(readerThreads));
+        p.setProperty(PP_SEARCH_THREADS, Integer.toString(searchThreads));
+        p.setProperty(PP_RAM_BUFFER_MB, Long.toString(ramBufferSize >> 20));
+        p.setProperty(PP_POSTINGS_CACHE_MB, Long.toString(postingsCacheSize >> 20));
+        p.setProperty(PP_RESULT_CACHE_MB, Long.toString(resultCacheSize >> 20));
+        p.setProperty(PP_RESULT_CACHE_TTL, Long.toString(resultCacheTimeToLive));
+        p.setProperty(PP_SURFACE_FORMS, Long.toString(surfaceForms));
+        p.setProperty(PP_DIVISION_MB, Long.toString(divisionSize >> 20));
 
         p.storeToXML(Files.newOutputStream(path, WRITE, TRUNCATE_EXISTING, CREATE), null);
     }
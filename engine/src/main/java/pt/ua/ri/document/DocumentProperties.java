@@ -44,7 +44,7 @@ public class DocumentProperties<S extends DocumentSchema<S>> implements Comparab
         return propertiesToString(schema.getFields());
     }
 
-    protected Optional<Serializable> get(String key) {
+    public Optional<Serializable> get(String key) {
         return Optional.ofNullable(map.get(key));
     }
 
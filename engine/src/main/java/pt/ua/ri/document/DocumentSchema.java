@@ -1,15 +1,11 @@
 package pt.ua.ri.document;
 
-import com.google.common.base.Converter;
 import pt.ua.ri.reader.FileParser;
 
 import java.nio.file.Path;
-import java.util.Map;
-import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
-import java.util.function.BiPredicate;
-
-import static java.util.Objects.nonNull;
+import java.util.function.Function;
 
 /**
  * @author tiago.novo
@@ -20,29 +16,26 @@ public abstract class DocumentSchema<S extends DocumentSchema<S>> {
 
     protected DocumentSchema(final Set<String> fields) {this.fields = fields;}
 
-    public abstract Map<String, BiPredicate<DocumentProperties<S>, String>> fieldChecker();
-
     public abstract FileParser<S> fileParser(final Path path);
 
-    public abstract Converter<String, DocumentProperties<S>> lineParser();
-
+    /**
+     * @return the fields stored for every document, in the order they are listed in.
+     */
     public Set<String> getFields() {
         return fields;
     }
 
-    public int size() {
-        return fields.size();
+    /**
+     * Fields with an order can be searched by range. Keys of a field's values, and of range bounds, compare as strings
+     * in that order; a bound also matches the values whose keys it prefixes.
+     *
+     * @return how to turn values of {@code field}, lowercase, into their keys, empty if the field has no order.
+     */
+    public Optional<Function<String, String>> rangeKey(final String field) {
+        return Optional.empty();
     }
 
-    protected static class FieldChecker<S extends DocumentSchema<S>>
-            implements BiPredicate<DocumentProperties<S>, String> {
-
-        private final String field;
-
-        FieldChecker(final String field) {this.field = field;}
-
-        @Override public boolean test(final DocumentProperties<S> dp, final String value) {
-            return nonNull(dp) && dp.get(field).filter(x -> Objects.equals(x, value)).isPresent();
-        }
+    public int size() {
+        return fields.size();
     }
 }
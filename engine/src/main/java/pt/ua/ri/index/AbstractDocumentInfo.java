@@ -2,13 +2,18 @@ package pt.ua.ri.index;
 
 import com.google.common.base.Preconditions;
 
+import java.io.DataOutput;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.Optional;
 
 public abstract class AbstractDocumentInfo implements DocumentInfo {
 
-    protected static final DecimalFormat DECIMAL_FORMAT = new DecimalFormat("#.########");
+    // DecimalFormat is not thread safe and postings are decoded by concurrent searchers
+    protected static final ThreadLocal<DecimalFormat> DECIMAL_FORMAT = ThreadLocal.withInitial(
+            () -> new DecimalFormat("#.########"));
     protected static final String SEPARATOR = ":";
+    private static final int[] NO_POSITIONS = new int[0];
     private final int docId;
     @SuppressWarnings("OptionalUsedAsFieldOrParameterType") private Optional<Double> normalizedDocumentFrequency;
 
@@ -44,7 +49,21 @@ public abstract class AbstractDocumentInfo implements DocumentInfo {
         return tf > 0 ? 1.0d + Math.log(tf) : 0.0d;
     }
 
+    /**
+     * @return the sorted positions of the term in the document, empty if they are not stored.
+     */
+    protected int[] getPositions() {
+        return NO_POSITIONS;
+    }
+
+    protected abstract void writePayload(DataOutput out) throws IOException;
+
+    final void write(final DataOutput out) throws IOException {
+        out.writeFloat((float) getNormalizedDocumentFrequency());
+        writePayload(out);
+    }
+
     @Override public String toString() {
-        return normalizedDocumentFrequency.map(df -> DECIMAL_FORMAT.format(df) + SEPARATOR).orElse("");
+        return normalizedDocumentFrequency.map(df -> DECIMAL_FORMAT.get().format(df) + SEPARATOR).orElse("");
     }
 }
@@ -1,51 +1,59 @@
 package pt.ua.ri.index;
 
-import com.google.common.base.Converter;
-import gnu.trove.iterator.TIntObjectIterator;
-import gnu.trove.map.TIntObjectMap;
-import gnu.trove.map.hash.TIntObjectHashMap;
-import org.apache.commons.collections4.trie.PatriciaTrie;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Ordering;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import pt.ua.ri.config.Configuration;
 import pt.ua.ri.document.Document;
-import pt.ua.ri.document.DocumentProperties;
 import pt.ua.ri.document.DocumentSchema;
+import pt.ua.ri.index.Manifest.SegmentInfo;
+import pt.ua.ri.index.PostingsCache.StoredPostings;
 import pt.ua.ri.tokenizer.StreamTokenizer;
 import pt.ua.ri.tokenizer.Token;
 import pt.ua.ri.utils.Division;
 import pt.ua.ri.utils.Divisions;
 import pt.ua.ri.utils.FileUtils;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.nio.file.Files;
+import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static com.google.common.base.Preconditions.*;
+import static com.google.common.collect.Lists.transform;
 import static java.lang.Character.isLetter;
-import static java.lang.Integer.parseInt;
 import static java.lang.Math.sqrt;
-import static java.lang.String.format;
-import static java.lang.Thread.sleep;
 import static java.nio.file.Files.*;
-import static java.util.Spliterator.*;
-import static java.util.Spliterators.spliteratorUnknownSize;
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.comparingLong;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Stream.of;
-import static java.util.stream.StreamSupport.stream;
 import static pt.ua.ri.index.AbstractIndexTuple.TOKEN_KEY_SEPARATOR;
-import static pt.ua.ri.index.AbstractIndexTuple.checkWord;
-import static pt.ua.ri.utils.Divisions.countExistingDivisions;
+import static pt.ua.ri.index.Manifest.SEGMENT_DIR_PREFIX;
 import static pt.ua.ri.utils.FileUtils.copyDirectory;
 import static pt.ua.ri.utils.FileUtils.deleteDirectory;
-import static pt.ua.ri.utils.StaticUtils.*;
 
 /**
  * Created by tiago.novo on 14-01-2017.
@@ -53,79 +61,174 @@ import static pt.ua.ri.utils.StaticUtils.*;
 @SuppressWarnings({"DefaultFileTemplate", "WeakerAccess"})
 public abstract class AbstractIndex<S extends DocumentSchema<S>> implements Index<S> {
 
-    private static final String DOCUMENT_SEPARATOR = ",";
     private final static Logger logger = LoggerFactory.getLogger(AbstractIndex.class);
 
-    private static <S extends DocumentSchema<S>> TIntObjectMap<DocumentProperties<S>> loadDocuments(Path indexDir,
-            Converter<String, DocumentProperties<S>> converter) {
-        TIntObjectMap<DocumentProperties<S>> docs = null;
-        final Path path = indexDir.resolve(DOCUMENT_FILENAME);
-        if (exists(path) && isRegularFile(path)) {
-            try (Stream<String> lines = lines(path)) {
-                final Map<Integer, DocumentProperties<S>> map = lines.map(line -> line.split(DOCUMENT_SEPARATOR, 2))
-                        .collect(toMap(split -> parseInt(split[0], 16), split -> converter.convert(split[1])));
-                docs = new TIntObjectHashMap<>(map.size());
-                docs.putAll(map);
-            } catch (IOException ignored) {
-                logger.warn("Error loading documents to memory.", ignored);
-            }
-
-        }
-        return docs != null ? docs : new TIntObjectHashMap<>();
-    }
-
     protected final Path indexDirectory;
-    protected final TIntObjectMap<DocumentProperties<S>> documents;
-    protected final Divisions divisions;
-    private final Map<String, IndexTuple> tokenIndex;
+    // replaced whenever a segment is added or merged, while holding the write lock of segmentsLock
+    private volatile Manifest manifest;
+    // held for reading by lookups, so merged segments are not deleted under them
+    private final ReadWriteLock segmentsLock;
+    private final Object commitLock;
+    // held for reading while a document is indexed and for writing while finishing, so no document is half written
+    private final ReadWriteLock indexingLock;
+    private final TieredMergePolicy mergePolicy;
+    private final ExecutorService merges;
+    // numbers the sub-index and segment directories, carried over from the manifest so they are never reused
+    private final AtomicInteger nextDirectory;
+    // written since the last finish
+    private final Queue<Path> subIndexes;
+    private final Queue<Segment> segments;
+    private final ThreadLocal<Segment> currentSegment;
+    private final AtomicInteger nextDocId;
+    private final AtomicLong bufferedBytes;
+    private final long ramBufferSize;
+    // bytes of postings written to a division file before the next one is started
+    private final long divisionSize;
+    private final Map<Path, Lexicon> lexicons;
     private final StreamTokenizer st;
-    private final Converter<String, DocumentProperties<S>> propertiesParser;
-    protected boolean needsMerging;
-    protected int nVersion = 0;
+    private final S schema;
+    // replaced by the written store once merged
+    private volatile DocumentStore<S> documents;
+    private final PostingFormat postingFormat;
+    private final PostingsReader postingsReader;
+    private final PostingsCache postingsCache;
+    protected volatile boolean needsMerging;
+    private final AtomicLong version = new AtomicLong(0);
+
+    protected AbstractIndex(Path dir, final StreamTokenizer st, final S schema) throws IOException {
+        this(dir, st, schema, PostingFormat.BINARY);
+    }
 
     protected AbstractIndex(Path dir,
             final StreamTokenizer st,
-            final Converter<String, DocumentProperties<S>> propertiesParser) throws IOException {
+            final S schema,
+            final PostingFormat postingFormat) throws IOException {
+        this(dir, st, schema, postingFormat, false, Configuration.RAM_BUFFER_DEFAULT,
+                Configuration.POSTINGS_CACHE_DEFAULT, Configuration.DIVISION_SIZE_DEFAULT);
+    }
+
+    protected AbstractIndex(final Configuration<S> conf, final StreamTokenizer st) throws IOException {
+        this(conf.getIndexPath(), st, conf.getSchema(), conf.getPostingFormat(), conf.isMemoryMapped(),
+                conf.getRamBufferSize(), conf.getPostingsCacheSize(), conf.getDivisionSize());
+    }
+
+    private AbstractIndex(Path dir,
+            final StreamTokenizer st,
+            final S schema,
+            final PostingFormat postingFormat,
+            final boolean memoryMapped,
+            final long ramBufferSize,
+            final long postingsCacheSize,
+            final long divisionSize) throws IOException {
         checkNotNull(dir);
+        checkArgument(ramBufferSize > 0, "RAM buffer must not be empty");
+        checkArgument(divisionSize > 0, "Divisions must not be empty");
+        this.ramBufferSize = ramBufferSize;
+        this.divisionSize = divisionSize;
+        this.bufferedBytes = new AtomicLong();
+        this.postingFormat = checkNotNull(postingFormat);
+        this.postingsReader = PostingsReader.of(memoryMapped);
+        this.postingsCache = postingsCacheSize > 0 ? new PostingsCache(postingsCacheSize) : null;
         createDirectories(dir);
         this.indexDirectory = dir;
         this.st = Objects.requireNonNull(st);
-        this.tokenIndex = new PatriciaTrie<>();
-        this.documents = loadDocuments(indexDirectory, propertiesParser);
+        this.segments = new ConcurrentLinkedQueue<>();
+        this.currentSegment = ThreadLocal.withInitial(() -> {
+            final Segment segment = new Segment();
+            segments.add(segment);
+            return segment;
+        });
+        this.subIndexes = new ConcurrentLinkedQueue<>();
+        this.lexicons = new ConcurrentHashMap<>();
+        this.segmentsLock = new ReentrantReadWriteLock();
+        this.commitLock = new Object();
+        this.indexingLock = new ReentrantReadWriteLock();
+        this.mergePolicy = new TieredMergePolicy();
+        // a single merge at a time, on a thread that ends once idle so it never keeps the JVM from exiting
+        this.merges = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("segment-merger-%d").build());
+        this.schema = checkNotNull(schema);
+        this.manifest = Manifest.read(indexDirectory).orElseGet(() -> Manifest.empty(schema.getFields()));
+        checkState(manifest.getFields().equals(ImmutableList.copyOf(schema.getFields())),
+                "Index %s stores fields %s, not %s", dir, manifest.getFields(), schema.getFields());
+        this.nextDirectory = new AtomicInteger(manifest.getNextSegment());
+        this.documents = DocumentStore.open(indexDirectory, schema, manifest.getDocuments());
+        this.nextDocId = new AtomicInteger(documents.size());
         this.needsMerging = false;
-        this.divisions = new Divisions();
-        divisions.splitToHave(1 + countExistingDivisions(indexDirectory));
-        this.propertiesParser = propertiesParser;
-
-
     }
 
     protected abstract IndexTuple decodeIndexTuple(final String line);
 
-    protected abstract DocumentInfo newDocumentInfo(final int docId, final int position);
+    protected abstract IndexTuple readIndexTuple(final String term, final ByteBuffer buffer);
+
+    protected abstract PostingsCursor readPostings(final ByteBuffer buffer);
+
+    /**
+     * @param positions positions of the term in the document, empty if this index does not store them.
+     */
+    protected abstract DocumentInfo newDocumentInfo(final int docId, final float normalizedDocumentFrequency,
+            final int termFrequency, final int[] positions);
 
     protected abstract IndexTuple newIndexTuple(final String term, final int docId, final DocumentInfo documentInfo);
 
+    protected abstract boolean storesPositions();
+
     public void clear() {
-        tokenIndex.clear();
+        segments.forEach(Segment::clear);
     }
 
+    /**
+     * Field names and values are case insensitive.
+     */
     @Override public boolean documentsHasField(int doc_id, String field, String value) {
-        return false;
+        return documents.hasValue(doc_id, field, value);
+    }
+
+    @Override public DocIdBitmap documentsWithField(final String field, final String value) {
+        return documents.documentsWith(field, value);
     }
 
+    @Override public DocIdBitmap documentsInRange(final String field, final String from, final String to) {
+        checkNotNull(field);
+        checkNotNull(from);
+        checkNotNull(to);
+        return schema.rangeKey(field.toUpperCase()).map(key -> {
+            final String low = from.equals(OPEN_BOUND) ? null : key.apply(from.toLowerCase());
+            final String high = to.equals(OPEN_BOUND) ? null : key.apply(to.toLowerCase());
+            return documents.documentsWith(field, value -> {
+                final String k = key.apply(value);
+                return (low == null || k.compareTo(low) >= 0) &&
+                       (high == null || k.compareTo(high) <= 0 || k.startsWith(high));
+            });
+        }).orElse(DocIdBitmap.EMPTY);
+    }
+
+    /**
+     * Adds what was indexed since the index was opened, or last finished, as a new segment. Existing segments are
+     * never rewritten here; a background merge combines them once enough of the same size pile up. Documents indexed
+     * concurrently wait for it to end.
+     */
     @Override public void finish() {
         logger.info("Finishing index.");
-        liberateMemory();
-        divisions.splitToHave(2 * (nVersion + 1));
-        mergeSubIndexes();
+        indexingLock.writeLock().lock();
+        try {
+            segments.forEach(this::liberateMemory);
+            mergeSubIndexes();
+            version.incrementAndGet();
+        } finally {
+            indexingLock.writeLock().unlock();
+        }
+        merges.execute(this::mergeSegments);
     }
 
+    /**
+     * Thread safe. Searches every segment, and may be called while a merge runs in the background.
+     */
     @Override public Optional<IndexTuple> get(String token) {
 
         if (!needsMerging) {
             try {
-                return retrieveToken(divisions.getDivisionFor(token), token);
+                return retrieveToken(token);
             } catch (IOException e) {
                 logger.warn("Error retrieving token {}", token, e);
             }
@@ -134,32 +237,84 @@ public abstract class AbstractIndex<S extends DocumentSchema<S>> implements Inde
         return Optional.empty();
     }
 
-    @Override public String getDocumentName(int docId) {
-        return documents.get(docId).toString();
+    @Override public Optional<PostingsCursor> getPostings(final String token) {
+        if (!needsMerging) {
+            try {
+                return segmentPostings(token);
+            } catch (IOException e) {
+                logger.warn("Error retrieving token {}", token, e);
+            }
+        }
 
+        return Optional.empty();
     }
 
+    @Override public float getMaxWeight(final String token) {
+        checkNotNull(token);
+        if (needsMerging) {
+            return 0.0f;
+        }
+        segmentsLock.readLock().lock();
+        try {
+            float maxWeight = 0.0f;
+            for (final SegmentInfo segment : manifest.getSegments()) {
+                maxWeight = Math.max(maxWeight, lexiconEntry(segment, token).map(Lexicon.Entry::getMaxWeight)
+                        .orElse(0.0f));
+            }
+            return maxWeight;
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return hit, miss and eviction counts of the posting list cache, all zero if it is disabled.
+     */
+    public CacheStats getPostingsCacheStats() {
+        return postingsCache != null ? postingsCache.stats() : new CacheStats(0, 0, 0, 0, 0, 0);
+    }
+
+    @Override public long getVersion() {
+        return version.get();
+    }
+
+    @Override public String getDocumentName(int docId) {
+        return documents.getName(docId);
+    }
+
+    /**
+     * Thread safe. Each calling thread fills its own in-memory segment, which is written to a sub-index of its own
+     * when memory runs low, so documents can be indexed concurrently. Waits for a running {@link #finish()}.
+     */
     @Override public int index(final Document<S> document) {
         checkNotNull(document, "Document cannot be null");
-
-        if (memoryLimitReached()) {
-            logger.info("Memory Limit reached: {}", estimatedUsedMemory());
-            liberateMemory();
+        indexingLock.readLock().lock();
+        try {
+            return indexDocument(document);
+        } finally {
+            indexingLock.readLock().unlock();
         }
-        final int currentDocId = documents.size() + 1;
+    }
+
+    private int indexDocument(final Document<S> document) {
+        final Segment segment = currentSegment.get();
+        final int currentDocId = nextDocId.incrementAndGet();
+        // tokens are interned by the tokenizer's dictionary, so they hash by identity
+        final Map<Token, TIntList> currentTokens = new HashMap<>();
         final AtomicInteger position = new AtomicInteger(0);
-        final PatriciaTrie<DocumentInfo> currentTokens = st.tokenize(document.stream())
-                .collect(toMap(Token::getString, token -> newDocumentInfo(currentDocId, position.getAndIncrement()),
-                        DocumentInfo::merge, PatriciaTrie::new));
+        st.tokenize(document.stream()).forEach(token -> currentTokens.computeIfAbsent(token,
+                term -> new TIntArrayList(4)).add(position.getAndIncrement()));
 
         final float weight = (float) sqrt(
-                currentTokens.values().stream().mapToLong(DocumentInfo::getTermFrequency).map(tf -> tf * tf).sum());
+                currentTokens.values().stream().mapToLong(TIntList::size).map(tf -> tf * tf).sum());
 
-        currentTokens.values().parallelStream().forEach(docsInfo -> docsInfo.setDocumentLength(weight));
+        segment.add(currentDocId, currentTokens, weight);
+        documents.add(currentDocId, document.getDocumentProperties());
 
-        currentTokens.forEach(
-                (s, docsInfo) -> tokenIndex.merge(s, newIndexTuple(s, currentDocId, docsInfo), IndexTuple::merge));
-        documents.put(currentDocId, document.getDocumentProperties());
+        if (bufferedBytes.get() > ramBufferSize) {
+            logger.info("RAM buffer full: {} bytes buffered, limit is {}", bufferedBytes, ramBufferSize);
+            segments.stream().max(comparingLong(Segment::getBufferedBytes)).ifPresent(this::liberateMemory);
+        }
 
         return currentDocId;
 
@@ -170,7 +325,7 @@ public abstract class AbstractIndex<S extends DocumentSchema<S>> implements Inde
     }
 
     @Override public Map<String, Optional<IndexTuple>> query(final String query) {
-        try (Stream<Token> tokenStream = optimizeSearchStream(st.tokenize(of(query)))) {
+        try (Stream<Token> tokenStream = optimizeSearchStream(st.tokenizeQuery(of(query)))) {
             return needsMerging ?
                    tokenStream.collect(toMap(Token::getString, token -> Optional.empty())) :
                    tokenStream.collect(toMap(Token::getString, token -> get(token.getString()),
@@ -178,120 +333,361 @@ public abstract class AbstractIndex<S extends DocumentSchema<S>> implements Inde
         }
     }
 
+    @Override public Map<String, Optional<PostingsCursor>> queryPostings(final String query) {
+        try (Stream<Token> tokenStream = optimizeSearchStream(st.tokenizeQuery(of(query)))) {
+            return tokenStream.collect(toMap(Token::getString, token -> getPostings(token.getString()),
+                    (postings, postings2) -> postings, LinkedHashMap::new));
+        }
+    }
+
+    @Override public List<String> terms(final String query) {
+        try (Stream<Token> tokenStream = optimizeSearchStream(st.tokenizeQuery(of(query)))) {
+            return tokenStream.map(Token::getString).collect(toList());
+        }
+    }
+
     protected Stream<Token> optimizeSearchStream(final Stream<Token> tokenize) {return tokenize;}
 
     protected Map<String, Optional<IndexTuple>> searchMapImplementation() {
         return new HashMap<>();
     }
 
-    private void liberateMemory() {
-        logger.info("Cleaning memory.");
-        final Path versionDirectory = indexDirectory.resolve(VERSION_DIR_PREFIX + nVersion);
-        writeIndexTo(versionDirectory);
-        clear();
-        nVersion++;
-        while (!hasFreeMemory()) {
-            forceGarbageCollection();
-            try {
-                sleep(500);
-            } catch (InterruptedException ex) {
-                throw new RuntimeException(ex);
+    private void liberateMemory(final Segment segment) {
+        synchronized (segment) {
+            if (segment.isEmpty()) {
+                return;
             }
+            logger.info("Cleaning memory.");
+            final Path versionDirectory = indexDirectory.resolve(VERSION_DIR_PREFIX + nextDirectory.getAndIncrement());
+            segment.writeTo(versionDirectory);
+            segment.clear();
+            subIndexes.add(versionDirectory.resolve(SUB_INDEX_FILENAME));
         }
     }
 
     private void mergeSubIndexes() {
+        final List<Path> subIndexes = new ArrayList<>();
+        for (Path subIndex; (subIndex = this.subIndexes.poll()) != null; ) {
+            if (isRegularFile(subIndex)) {
+                subIndexes.add(subIndex);
+            }
+        }
+        if (subIndexes.isEmpty() && documents.size() == manifest.getDocuments()) {
+            logger.info("Nothing indexed since the last merge.");
+            return;
+        }
+
         logger.info("Merging Sub-Indexes.");
         final Path temporaryDirectory = indexDirectory.resolve("temp");
-        final Path documentsFile = temporaryDirectory.resolve(DOCUMENT_FILENAME);
         logger.info("TEMP_DIR=[{}]", temporaryDirectory);
-        logger.info("DOC_FILE=[{}]", documentsFile);
 
         try {
             createDirectories(temporaryDirectory);
-            write(documentsFile, (Iterable<String>) DocumentsIterator::new);
+            documents.write(temporaryDirectory);
         } catch (IOException ex) {
             logger.warn("Error writing docs.", ex);
             throw new UncheckedIOException(ex);
         }
 
-
-        logger.info("Merging sub-indexes to large index on {}", temporaryDirectory);
         try {
-            final List<BufferedReader> readers = walk(indexDirectory).filter(Files::isRegularFile)
-                    .filter(path -> Objects.equals(SUB_INDEX_FILENAME, path.getFileName().toString()))
-                    .map(FileUtils::newBufferedReader)
-                    .filter(Objects::nonNull)
-                    .collect(toList());
-
-            readers.stream()
-                    .flatMap(br -> stream(spliteratorUnknownSize(br.lines().iterator(), ORDERED | NONNULL | SORTED),
-                            false))
-                    .sorted()
-                    .forEachOrdered(new IndexLineMerger(temporaryDirectory));
+            final Optional<SegmentInfo> segment = subIndexes.isEmpty() ?
+                                                  Optional.empty() :
+                                                  Optional.of(writeSegment(subIndexes));
+            segment.ifPresent(info -> logger.info("Merged into {}: {}", info, info.getDivisions()));
 
             logger.info("Deleting Sub-indexes");
-            walk(indexDirectory).filter(Files::isDirectory)
-                    .filter(path -> !Objects.equals(indexDirectory, path))
-                    .filter(path -> !Objects.equals(temporaryDirectory, path))
-                    .forEach(FileUtils::deleteDirectory);
+            subIndexes.stream().map(Path::getParent).forEach(FileUtils::deleteDirectory);
             logger.info("Moving to final directory {}", indexDirectory);
             copyDirectory(temporaryDirectory, indexDirectory);
             deleteDirectory(temporaryDirectory);
+
+            // the new manifest is what makes the segment, and the documents written with it, part of the index
+            final int added = documents.size();
+            commit(current -> segment.map(info -> current.withSegment(info, added, nextDirectory.get()))
+                    .orElseGet(() -> current.withDocuments(added, nextDirectory.get())), ImmutableList.of());
+            documents = DocumentStore.open(indexDirectory, schema, manifest.getDocuments());
             needsMerging = false;
         } catch (IOException ignored) {
             logger.warn("Error on mergeSubIndexes.", ignored);
         }
     }
 
-    private Optional<IndexTuple> retrieveToken(final Division divisionToCheck, final String token) throws IOException {
-        checkNotNull(token);
-        checkNotNull(divisionToCheck);
-        checkArgument(divisionToCheck.inRange(token), "Must be in range");
+    /**
+     * Merges the sorted sub-indexes into a new segment directory.
+     */
+    private SegmentInfo writeSegment(final List<Path> subIndexes) throws IOException {
+        logger.info("Merging {} sub-indexes to a new segment", subIndexes.size());
+        final List<BufferedReader> readers = subIndexes.stream()
+                .map(FileUtils::newBufferedReader)
+                .filter(Objects::nonNull)
+                .collect(toList());
+
+        // every sub-index is already sorted, so a k-way merge keeps a single line per sub-index in memory
+        final String name = SEGMENT_DIR_PREFIX + nextDirectory.getAndIncrement();
+        final IndexLineMerger merger = new IndexLineMerger(indexDirectory.resolve(name));
+        try {
+            Iterators.mergeSorted(transform(readers, br -> br.lines().iterator()), Ordering.natural())
+                    .forEachRemaining(merger);
+        } finally {
+            merger.close();
+            for (final BufferedReader reader : readers) {
+                reader.close();
+            }
+        }
+        return new SegmentInfo(name, postingFormat, merger.getTerms(), merger.getBytes(), merger.getDivisions());
+    }
 
-        try (final BufferedReader br = newBufferedReader(indexDirectory.resolve(divisionToCheck.getFilename()))) {
-            final Optional<String> find = br.lines().filter(line -> checkWord(line, token)).findFirst();
-            return find.map(this::decodeIndexTuple);
+    /**
+     * Runs in the background: merges segments for as long as the merge policy finds any to merge.
+     */
+    private void mergeSegments() {
+        try {
+            Optional<List<SegmentInfo>> merge;
+            while ((merge = mergePolicy.findMerge(manifest.getSegments())).isPresent()) {
+                final List<SegmentInfo> merging = merge.get();
+                logger.info("Merging segments {}", merging);
+                final SegmentInfo merged = mergeSegments(merging);
+                commit(current -> current.withMerged(merging, merged, nextDirectory.get()), merging);
+                logger.info("Merged into {}: {}", merged, merged.getDivisions());
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Error merging segments.", e);
         }
     }
 
-    private void writeIndexTo(Path dir) {
-        checkNotNull(dir);
-        final Path docs = dir.resolve(DOCUMENT_FILENAME);
-        final Path subIndexFile = dir.resolve(SUB_INDEX_FILENAME);
-
-        try (final Stream<String> tokenLines = tokenIndex.values().stream().map(Object::toString).sorted()) {
-            logger.info("Writing {}", subIndexFile);
-            createDirectories(dir);
-            write(docs, (Iterable<String>) DocumentsIterator::new);
-            write(subIndexFile, (Iterable<String>) tokenLines::iterator);
-            logger.info("Written {} token lines", tokenIndex.size());
-        } catch (IOException ignored) {
-            logger.error("Error Writing files.", ignored);
+    /**
+     * Merges adjacent segments into a new segment directory. Postings are read a term at a time, in term order, and
+     * rewritten in the configured format.
+     */
+    private SegmentInfo mergeSegments(final List<SegmentInfo> merging) throws IOException {
+        final String name = SEGMENT_DIR_PREFIX + nextDirectory.getAndIncrement();
+        final IndexLineMerger merger = new IndexLineMerger(indexDirectory.resolve(name));
+        try {
+            Iterators.mergeSorted(transform(merging, this::storedPostings), comparing(IndexTuple::getTerm))
+                    .forEachRemaining(merger::add);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            merger.close();
         }
+        return new SegmentInfo(name, postingFormat, merger.getTerms(), merger.getBytes(), merger.getDivisions());
+    }
 
+    /**
+     * @return the posting lists of a segment, in term order, read from its divisions one at a time.
+     */
+    private Iterator<IndexTuple> storedPostings(final SegmentInfo segment) {
+        final Path directory = indexDirectory.resolve(segment.getName());
+        return Iterators.concat(Iterators.transform(segment.getDivisions().iterator(), division -> {
+            final Path file = directory.resolve(division.getFilename());
+            final Path lexiconFile = directory.resolve(division.getLexiconFilename());
+            try {
+                final Lexicon lexicon = exists(lexiconFile) ? Lexicon.read(lexiconFile) : Lexicon.empty();
+                return IntStream.range(0, lexicon.size()).mapToObj(i -> {
+                    final String term = lexicon.getTerm(i);
+                    final Lexicon.Entry entry = lexicon.getEntry(i);
+                    try {
+                        final ByteBuffer buffer = postingsReader.read(file, entry.getOffset(), entry.getLength());
+                        return segment.getFormat().decode(this, term, buffer);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }).iterator();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
     }
 
-    private class IndexLineMerger implements Consumer<String> {
+    /**
+     * Makes the change of the current manifest the index's, then deletes the {@code replaced} segments once no lookup
+     * reads them. Serialized, so finishing and merging in the background never drop each other's segments.
+     */
+    private void commit(final UnaryOperator<Manifest> change, final List<SegmentInfo> replaced) throws IOException {
+        synchronized (commitLock) {
+            final Manifest next = change.apply(manifest);
+            next.write(indexDirectory);
+            segmentsLock.writeLock().lock();
+            try {
+                manifest = next;
+                if (postingsCache != null) {
+                    // cached lists may miss a new segment or still be the ones of merged segments
+                    postingsCache.invalidateAll();
+                }
+                for (final SegmentInfo segment : replaced) {
+                    final Path directory = indexDirectory.resolve(segment.getName());
+                    lexicons.keySet().removeIf(path -> path.startsWith(directory));
+                    postingsReader.release(directory);
+                }
+            } finally {
+                segmentsLock.writeLock().unlock();
+            }
+        }
+        for (final SegmentInfo segment : replaced) {
+            deleteDirectory(indexDirectory.resolve(segment.getName()));
+        }
+    }
+
+    /**
+     * Merges the postings of the token in every segment.
+     */
+    private Optional<IndexTuple> retrieveToken(final String token) throws IOException {
+        IndexTuple tuple = null;
+        for (final StoredPostings postings : postingLists(token)) {
+            final IndexTuple decoded = postings.getFormat().decode(this, token, postings.getBuffer());
+            tuple = tuple == null ? decoded : tuple.merge(decoded);
+        }
+        return Optional.ofNullable(tuple);
+    }
+
+    /**
+     * @return a cursor over the postings of the token in every segment, one after the other.
+     */
+    private Optional<PostingsCursor> segmentPostings(final String token) throws IOException {
+        final List<PostingsCursor> cursors = new ArrayList<>();
+        for (final StoredPostings postings : postingLists(token)) {
+            cursors.add(postings.getFormat().cursor(this, token, postings.getBuffer()));
+        }
+        if (cursors.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(cursors.size() == 1 ? cursors.get(0) : new ConcatenatedPostingsCursor(cursors));
+    }
+
+    /**
+     * @return the stored posting lists of the token, in segment order, from the cache if it is enabled.
+     */
+    private List<StoredPostings> postingLists(final String token) throws IOException {
+        return postingsCache != null ? postingsCache.get(token, this::readPostingLists) : readPostingLists(token);
+    }
+
+    private List<StoredPostings> readPostingLists(final String token) throws IOException {
+        segmentsLock.readLock().lock();
+        try {
+            final List<StoredPostings> postings = new ArrayList<>();
+            for (final SegmentInfo segment : manifest.getSegments()) {
+                final Optional<ByteBuffer> buffer = readPostingBytes(segment, token);
+                if (buffer.isPresent()) {
+                    postings.add(new StoredPostings(segment.getFormat(), buffer.get()));
+                }
+            }
+            return postings;
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }
+
+    private Optional<ByteBuffer> readPostingBytes(final SegmentInfo segment, final String token) throws IOException {
+        final Optional<Lexicon.Entry> entry = lexiconEntry(segment, token);
+        if (!entry.isPresent()) {
+            return Optional.empty();
+        }
+        final Division division = segment.getDivisions().getDivisionFor(token);
+        return Optional.of(postingsReader.read(indexDirectory.resolve(segment.getName()).resolve(
+                division.getFilename()), entry.get().getOffset(), entry.get().getLength()));
+    }
+
+    private Optional<Lexicon.Entry> lexiconEntry(final SegmentInfo segment, final String token) {
+        checkNotNull(token);
+        final Division division = segment.getDivisions().getDivisionFor(token);
+        final Path path = indexDirectory.resolve(segment.getName()).resolve(division.getLexiconFilename());
+        return lexicons.computeIfAbsent(path, file -> {
+            try {
+                return exists(file) ? Lexicon.read(file) : Lexicon.empty();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).get(token);
+    }
+
+    /**
+     * Postings buffered in memory by a single indexing thread. It may be flushed by whichever thread fills the RAM
+     * buffer, so it is guarded by its own monitor.
+     */
+    private class Segment {
+        private final PostingsBuffer buffer = new PostingsBuffer(storesPositions());
+
+        synchronized void add(final int docId, final Map<Token, TIntList> documentTokens, final float weight) {
+            long bytes = 0;
+            for (final Map.Entry<Token, TIntList> entry : documentTokens.entrySet()) {
+                final int tf = entry.getValue().size();
+                final float normalized = (float) ((1.0d + Math.log(tf)) / weight);
+                bytes += buffer.add(entry.getKey(), docId, normalized, entry.getValue());
+            }
+            bufferedBytes.addAndGet(bytes);
+        }
+
+        synchronized void clear() {
+            bufferedBytes.addAndGet(-buffer.getBytes());
+            buffer.clear();
+        }
+
+        synchronized long getBufferedBytes() {
+            return buffer.getBytes();
+        }
+
+        boolean isEmpty() {
+            return buffer.isEmpty();
+        }
+
+        void writeTo(final Path dir) {
+            checkNotNull(dir);
+            final Path subIndexFile = dir.resolve(SUB_INDEX_FILENAME);
+
+            try {
+                logger.info("Writing {}", subIndexFile);
+                createDirectories(dir);
+                // tuples are built one term at a time, so flushing never holds more than a single posting list
+                write(subIndexFile, (Iterable<String>) () -> Arrays.stream(buffer.sortedTerms())
+                        .map(term -> toIndexTuple(term).toString())
+                        .iterator());
+                logger.info("Written {} token lines", buffer.size());
+            } catch (IOException ignored) {
+                logger.error("Error Writing files.", ignored);
+            }
+        }
+
+        private IndexTuple toIndexTuple(final Token term) {
+            final PostingsBuffer.Postings postings = buffer.postings(term);
+            IndexTuple tuple = null;
+            while (postings.next()) {
+                final int docId = postings.getDocId();
+                final IndexTuple posting = newIndexTuple(term.getString(), docId,
+                        newDocumentInfo(docId, postings.getWeight(), postings.getTermFrequency(),
+                                postings.getPositions()));
+                tuple = tuple == null ? posting : tuple.merge(posting);
+            }
+            return tuple;
+        }
+    }
+
+    /**
+     * Writes the merged postings, cutting a new division once the encoded postings written to the current one reach
+     * the configured division size, so that divisions end up about the same size whatever the terms and however many
+     * sub-indexes were merged. Terms are never split between divisions.
+     */
+    private class IndexLineMerger implements Consumer<String>, Closeable {
 
-        private final Iterator<Division> iterator;
         private final Path indexDirectory;
-        private Division currentDivision;
-        private String currentTokenString;
-        private BufferedWriter writer;
+        private final List<String> boundaries;
+        private int division;
+        private int terms;
+        private long writtenBytes;
+        private IndexTuple currentTuple;
+        private CountingOutputStream output;
+        private Lexicon.Builder lexicon;
 
         IndexLineMerger(final Path indexDirectory) throws IOException {
-            checkNotNull(divisions);
             checkNotNull(indexDirectory);
-            this.iterator = divisions.iterator();
             this.indexDirectory = indexDirectory;
+            this.boundaries = new ArrayList<>();
+            this.division = 0;
             createDirectories(indexDirectory);
-            advance();
+            openDivision();
         }
 
         @Override public synchronized void accept(String line) {
             checkNotNull(line, "Line cannot be null");
-            checkNotNull(currentDivision, "Current Division is null. Something bad happened");
             if (!isLetter(line.codePointAt(0))) {
                 logger.error("Line does not start with a letter: \"{}\"", line);
                 return;
@@ -305,70 +701,85 @@ public abstract class AbstractIndex<S extends DocumentSchema<S>> implements Inde
             }
 
 
-            final String tokenString = line.substring(0, idxOf);
-            final String postingLists = line.substring(idxOf + 1);
+            add(decodeIndexTuple(line));
+        }
 
+        synchronized void add(final IndexTuple tuple) {
+            final String term = tuple.getTerm();
+            if (currentTuple != null && term.equals(currentTuple.getTerm())) {
+                currentTuple.merge(tuple);
+                return;
+            }
+            checkState(currentTuple == null || term.compareTo(currentTuple.getTerm()) > 0,
+                    "Strings are not in order", term, currentTuple);
 
             try {
-
-                if (!tokenString.equals(currentTokenString)) {
-                    writer.newLine();
-                    while (!currentDivision.inRange(tokenString)) {
-                        if (!advance()) {
-                            logger.error("No more divisions to advance, exiting. {} {}", currentDivision, line);
-                            return;
-                        }
-                        logger.info("Advanced to division {} because of token {}", currentDivision, tokenString);
-                    }
-                    currentTokenString = tokenString;
-                    writer.append(tokenString).append(TOKEN_KEY_SEPARATOR);
+                writeCurrentTuple();
+                if (output.getCount() >= divisionSize) {
+                    closeDivision();
+                    boundaries.add(term);
+                    division++;
+                    openDivision();
+                    logger.info("Advanced to division {} because of token {}", division, term);
                 }
-                checkState(tokenString.compareTo(currentTokenString) <= 0, "Strings are not in order", tokenString,
-                        currentTokenString);
-                writer.append(postingLists).append(TOKEN_KEY_SEPARATOR);
+                currentTuple = tuple;
+                terms++;
             } catch (IOException e) {
-                logger.warn("Error in writing {}.", line, e);
+                logger.warn("Error in writing {}.", term, e);
             }
         }
 
-        private synchronized boolean advance() {
-            if (iterator.hasNext()) {
-                this.currentDivision = iterator.next();
-                final Path path = indexDirectory.resolve(currentDivision.getFilename());
-                try {
-                    this.writer = newBufferedWriter(path);
-                    logger.debug("Created Writer for file {}", path);
-                    return true;
-                } catch (IOException ex) {
-                    logger.error("Error opening writer to {}", path, ex);
-                    throw new UncheckedIOException(ex);
-                }
-            }
-            logger.debug("Could not advance to next Division. Last one is {}", currentDivision);
-            return false;
+        @Override public synchronized void close() throws IOException {
+            writeCurrentTuple();
+            closeDivision();
         }
-    }
 
-    private class DocumentsIterator implements Iterator<String> {
-        private final TIntObjectIterator<DocumentProperties<S>> it;
-        private final Converter<DocumentProperties<S>, String> toString;
+        Divisions getDivisions() {
+            return Divisions.of(boundaries);
+        }
 
-        public DocumentsIterator() {
-            checkNotNull(documents);
-            this.it = documents.iterator();
-            this.toString = propertiesParser.reverse();
+        int getTerms() {
+            return terms;
         }
 
-        @Override public boolean hasNext() {
-            return it.hasNext();
+        /**
+         * @return the bytes written to the division files, once closed.
+         */
+        long getBytes() {
+            return writtenBytes;
+        }
+
+        private void openDivision() {
+            final Path path = indexDirectory.resolve(Division.getFilename(division));
+            try {
+                this.output = new CountingOutputStream(new BufferedOutputStream(newOutputStream(path)));
+                this.lexicon = new Lexicon.Builder();
+                logger.debug("Created Writer for file {}", path);
+            } catch (IOException ex) {
+                logger.error("Error opening writer to {}", path, ex);
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        private void closeDivision() throws IOException {
+            if (output != null) {
+                output.close();
+                writtenBytes += output.getCount();
+                output = null;
+                lexicon.write(indexDirectory.resolve(Division.getLexiconFilename(division)));
+            }
         }
 
-        @Override public String next() {
-            if (!hasNext()) {
-                throw new NoSuchElementException();
+        private void writeCurrentTuple() throws IOException {
+            if (currentTuple != null) {
+                final byte[] bytes = postingFormat.encode(currentTuple);
+                final long offset = output.getCount();
+                output.write(bytes);
+                output.write('\n');
+                lexicon.add(currentTuple.getTerm(), offset, bytes.length, currentTuple.getDocumentFrequency(),
+                        ((AbstractIndexTuple) currentTuple).getMaxWeight());
+                currentTuple = null;
             }
-            it.advance();
-            return format("%X%s%s", it.key(), DOCUMENT_SEPARATOR, toString.convert(it.value()));
         }
     }
 }
@@ -1,16 +1,20 @@
 package pt.ua.ri.index;
 
-import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
 import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
 
+import pt.ua.ri.utils.VariableByte;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -18,36 +22,53 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public abstract class AbstractIndexTuple implements IndexTuple {
 
     static final String TOKEN_KEY_SEPARATOR = " ";
+    static final int BLOCK_SIZE = 128;
     private static final String DOCUMENT_INFO_SEPARATOR = " ";
     private static final String ID_SEPARATOR = ":";
 
-    static boolean checkWord(final String line, final String word) {
-        checkNotNull(line);
-        checkNotNull(word);
-        final int idxOf = line.indexOf(TOKEN_KEY_SEPARATOR);
-        return idxOf > 0 && idxOf < line.length() && word.equalsIgnoreCase(line.substring(0, idxOf));
-    }
-
     protected static AbstractIndexTuple decode(final String line,
             final Function<String, AbstractIndexTuple> sup,
-            final Function<String, AbstractDocumentInfo> parser) {
+            final DocumentInfoParser parser) {
 
         checkNotNull(sup, "Supplier must not be null");
         checkNotNull(line, "Line cannot be null");
         final int idxOf = line.indexOf(TOKEN_KEY_SEPARATOR);
         checkArgument(idxOf > 0, "Line is invalid. %s", line);
         final AbstractIndexTuple tuple = sup.apply(line.substring(0, idxOf));
-        final List<String> strings = ImmutableList.copyOf(line.substring(idxOf).split(DOCUMENT_INFO_SEPARATOR));
 
-        strings.parallelStream().forEach(str -> {
+        for (final String str : line.substring(idxOf + 1).split(DOCUMENT_INFO_SEPARATOR)) {
+            if (str.isEmpty()) {
+                continue;
+            }
             final String[] parts = str.split(ID_SEPARATOR, 2);
             final int id = Integer.parseInt(parts[0], 16);
-            final AbstractDocumentInfo di = parser.apply(parts[1]);
-            tuple.add(id, di);
-        });
+            final AbstractDocumentInfo di = parser.parse(id, parts[1]);
+            if (di != null) {
+                tuple.add(id, di);
+            }
+        }
+        return tuple;
+    }
+
+    protected static AbstractIndexTuple read(final String term,
+            final ByteBuffer buffer,
+            final Function<String, AbstractIndexTuple> sup,
+            final DocumentInfoReader reader) {
+
+        checkNotNull(sup, "Supplier must not be null");
+        final AbstractIndexTuple tuple = sup.apply(term);
+        final BlockPostingsCursor cursor = new BlockPostingsCursor(buffer, reader);
+        while (cursor.next() != PostingsCursor.NO_MORE_DOCS) {
+            tuple.add(cursor.docId(), cursor.documentInfo());
+        }
         return tuple;
     }
 
+    protected static PostingsCursor readPostings(final ByteBuffer buffer, final DocumentInfoReader reader) {
+        checkNotNull(buffer, "Buffer cannot be null");
+        return new BlockPostingsCursor(buffer, reader);
+    }
+
     protected final TIntObjectMap<DocumentInfo> docs; //Document Frequency is docs.size()
     private final String term;
 
@@ -101,20 +122,81 @@ public abstract class AbstractIndexTuple implements IndexTuple {
         return this;
     }
 
-    public synchronized Iterable<Integer> getDocumentsID() {
-        return IntStream.of(docs.keySet().toArray()).boxed().collect(Collectors.toList());
+    @Override public synchronized PostingsCursor cursor() {
+        final int[] docIds = docs.keys();
+        Arrays.sort(docIds);
+        final float[] weights = new float[docIds.length];
+        final int[][] positions = new int[docIds.length][];
+        for (int i = 0; i < docIds.length; i++) {
+            final AbstractDocumentInfo documentInfo = (AbstractDocumentInfo) docs.get(docIds[i]);
+            weights[i] = (float) documentInfo.getNormalizedDocumentFrequency();
+            positions[i] = documentInfo.getPositions();
+        }
+        return new ArrayPostingsCursor(docIds, weights, positions);
+    }
+
+    /**
+     * @return the highest normalized term frequency of this term in any document, an upper bound of its contribution
+     * to a document score.
+     */
+    synchronized float getMaxWeight() {
+        float max = 0.0f;
+        for (final DocumentInfo documentInfo : docs.valueCollection()) {
+            max = Math.max(max, (float) documentInfo.getNormalizedDocumentFrequency());
+        }
+        return max;
     }
 
     @Override public String toString() {
         final StringBuilder sb = new StringBuilder(getTerm()).append(TOKEN_KEY_SEPARATOR);
         docs.forEachEntry((doc_id, doc_info) -> {
-            sb.append(Integer.toHexString(doc_id)).append(":").append(doc_info).append(' ');
+            sb.append(Integer.toHexString(doc_id)).append(ID_SEPARATOR).append(doc_info).append(DOCUMENT_INFO_SEPARATOR);
             return true;
         });
 
         return sb.toString();
     }
 
+    /**
+     * Binary layout: the document frequency, a skip table with one entry per block of {@link #BLOCK_SIZE} documents
+     * (last document id as a gap from the previous block's, block length in bytes, highest weight in the block) and
+     * then the blocks, each a run of document id gaps followed by the document info.
+     */
+    synchronized void write(final DataOutput out) throws IOException {
+        final int[] docIds = docs.keys();
+        Arrays.sort(docIds);
+        VariableByte.write(out, docIds.length);
+        final ByteArrayDataOutput blocks = ByteStreams.newDataOutput();
+        int previous = 0;
+        for (int start = 0; start < docIds.length; start += BLOCK_SIZE) {
+            final int end = Math.min(docIds.length, start + BLOCK_SIZE);
+            final ByteArrayDataOutput block = ByteStreams.newDataOutput();
+            final int previousBlockLast = previous;
+            float maxWeight = 0.0f;
+            for (int i = start; i < end; i++) {
+                final AbstractDocumentInfo documentInfo = (AbstractDocumentInfo) docs.get(docIds[i]);
+                VariableByte.write(block, docIds[i] - previous);
+                documentInfo.write(block);
+                maxWeight = Math.max(maxWeight, (float) documentInfo.getNormalizedDocumentFrequency());
+                previous = docIds[i];
+            }
+            final byte[] bytes = block.toByteArray();
+            VariableByte.write(out, previous - previousBlockLast);
+            VariableByte.write(out, bytes.length);
+            out.writeFloat(maxWeight);
+            blocks.write(bytes);
+        }
+        out.write(blocks.toByteArray());
+    }
+
+    @FunctionalInterface protected interface DocumentInfoReader {
+        AbstractDocumentInfo read(int docId, ByteBuffer buffer);
+    }
+
+    @FunctionalInterface protected interface DocumentInfoParser {
+        AbstractDocumentInfo parse(int docId, String str);
+    }
+
     private void add(int docId, DocumentInfo di) {
         checkNotNull(di, "Document Info cannot be null");
 
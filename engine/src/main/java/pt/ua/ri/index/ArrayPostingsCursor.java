@@ -0,0 +1,92 @@
+package pt.ua.ri.index;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Cursor over a posting list decoded to parallel arrays. {@link #advance(int)} gallops from the current position
+ * before binary searching, so intersecting a short list with a long one costs O(n log(m/n)).
+ *
+ * @author tiago.novo
+ */
+final class ArrayPostingsCursor implements PostingsCursor {
+
+    private final int[] docIds;
+    private final float[] weights;
+    private final int[][] positions;
+    private final float maxWeight;
+    private int index;
+
+    ArrayPostingsCursor(final int[] docIds, final float[] weights, final int[][] positions) {
+        checkNotNull(docIds);
+        checkNotNull(weights);
+        checkNotNull(positions);
+        checkArgument(docIds.length == weights.length && docIds.length == positions.length,
+                "Every document needs a weight and positions");
+        this.docIds = docIds;
+        this.weights = weights;
+        this.positions = positions;
+        float max = 0.0f;
+        for (final float weight : weights) {
+            max = Math.max(max, weight);
+        }
+        this.maxWeight = max;
+        this.index = -1;
+    }
+
+    @Override public int docId() {
+        if (index < 0) {
+            return -1;
+        }
+        return index < docIds.length ? docIds[index] : NO_MORE_DOCS;
+    }
+
+    @Override public int next() {
+        if (index < docIds.length) {
+            index++;
+        }
+        return docId();
+    }
+
+    @Override public int advance(final int target) {
+        final int current = docId();
+        if (current >= target) {
+            return current;
+        }
+        int low = index + 1;
+        int step = 1;
+        int high = low;
+        while (high < docIds.length && docIds[high] < target) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, docIds.length - 1);
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (docIds[mid] < target) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        index = low;
+        return docId();
+    }
+
+    @Override public float weight() {
+        return weights[index];
+    }
+
+    @Override public int[] positions() {
+        return positions[index];
+    }
+
+    @Override public float maxWeight(final int target) {
+        return maxWeight;
+    }
+
+    @Override public int size() {
+        return docIds.length;
+    }
+}
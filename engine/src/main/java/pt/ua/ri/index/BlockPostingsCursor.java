@@ -0,0 +1,151 @@
+package pt.ua.ri.index;
+
+import pt.ua.ri.utils.VariableByte;
+
+import java.nio.ByteBuffer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static pt.ua.ri.index.AbstractIndexTuple.BLOCK_SIZE;
+
+/**
+ * Cursor over a {@link PostingFormat#BINARY} posting list. Only the skip table is read up front; a block is decoded
+ * when the cursor lands on it, so {@link #advance(int)} jumps over blocks whose last document is before the target and
+ * {@link #maxWeight(int)} answers from the skip table alone.
+ *
+ * @author tiago.novo
+ * @see AbstractIndexTuple#write(java.io.DataOutput)
+ */
+final class BlockPostingsCursor implements PostingsCursor {
+
+    private final ByteBuffer buffer;
+    private final AbstractIndexTuple.DocumentInfoReader reader;
+    private final int documentFrequency;
+    private final int[] lastDocIds;
+    private final int[] blockOffsets;
+    private final float[] blockMaxWeights;
+    private final int[] docIds;
+    private final AbstractDocumentInfo[] documents;
+    private int block;
+    private int blockSize;
+    private int index;
+    private int docId;
+
+    BlockPostingsCursor(final ByteBuffer buffer, final AbstractIndexTuple.DocumentInfoReader reader) {
+        checkNotNull(buffer);
+        this.reader = checkNotNull(reader);
+        this.buffer = buffer.duplicate();
+        this.documentFrequency = VariableByte.read(this.buffer);
+        final int blocks = (documentFrequency + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        this.lastDocIds = new int[blocks];
+        this.blockOffsets = new int[blocks];
+        this.blockMaxWeights = new float[blocks];
+        int lastDocId = 0;
+        final int[] lengths = new int[blocks];
+        for (int b = 0; b < blocks; b++) {
+            lastDocId += VariableByte.read(this.buffer);
+            lastDocIds[b] = lastDocId;
+            lengths[b] = VariableByte.read(this.buffer);
+            blockMaxWeights[b] = this.buffer.getFloat();
+        }
+        int offset = this.buffer.position();
+        for (int b = 0; b < blocks; b++) {
+            blockOffsets[b] = offset;
+            offset += lengths[b];
+        }
+        this.docIds = new int[Math.min(BLOCK_SIZE, documentFrequency)];
+        this.documents = new AbstractDocumentInfo[docIds.length];
+        this.block = -1;
+        this.docId = -1;
+    }
+
+    @Override public int docId() {
+        return docId;
+    }
+
+    @Override public int next() {
+        if (docId == NO_MORE_DOCS) {
+            return docId;
+        }
+        if (block >= 0 && index + 1 < blockSize) {
+            return docId = docIds[++index];
+        }
+        return block + 1 < lastDocIds.length ? load(block + 1) : exhaust();
+    }
+
+    @Override public int advance(final int target) {
+        if (docId >= target) {
+            return docId;
+        }
+        final int targetBlock = blockFor(target);
+        if (targetBlock < 0) {
+            return exhaust();
+        }
+        if (targetBlock != block) {
+            load(targetBlock);
+        }
+        while (docIds[index] < target) {
+            index++;
+        }
+        return docId = docIds[index];
+    }
+
+    @Override public float weight() {
+        return (float) documents[index].getNormalizedDocumentFrequency();
+    }
+
+    @Override public int[] positions() {
+        return documents[index].getPositions();
+    }
+
+    @Override public float maxWeight(final int target) {
+        final int targetBlock = blockFor(target);
+        return targetBlock < 0 ? 0.0f : blockMaxWeights[targetBlock];
+    }
+
+    @Override public int size() {
+        return documentFrequency;
+    }
+
+    AbstractDocumentInfo documentInfo() {
+        return documents[index];
+    }
+
+    /**
+     * @return the first block, not before the current one, whose last document is at least {@code target}, or -1.
+     */
+    private int blockFor(final int target) {
+        int low = Math.max(block, 0);
+        int high = lastDocIds.length - 1;
+        if (low > high || lastDocIds[high] < target) {
+            return -1;
+        }
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (lastDocIds[mid] < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int load(final int b) {
+        block = b;
+        blockSize = Math.min(BLOCK_SIZE, documentFrequency - b * BLOCK_SIZE);
+        buffer.position(blockOffsets[b]);
+        int current = b == 0 ? 0 : lastDocIds[b - 1];
+        for (int i = 0; i < blockSize; i++) {
+            current += VariableByte.read(buffer);
+            docIds[i] = current;
+            documents[i] = reader.read(current, buffer);
+        }
+        index = 0;
+        return docId = docIds[0];
+    }
+
+    private int exhaust() {
+        block = lastDocIds.length;
+        return docId = NO_MORE_DOCS;
+    }
+}
@@ -0,0 +1,65 @@
+package pt.ua.ri.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Reads posting lists with positional reads on channels that are kept open between lookups.
+ *
+ * @author tiago.novo
+ */
+class ChannelPostingsReader implements PostingsReader {
+    private static final Logger logger = LoggerFactory.getLogger(ChannelPostingsReader.class);
+    private final Map<Path, FileChannel> channels = new ConcurrentHashMap<>();
+
+    @Override public ByteBuffer read(final Path file, final long offset, final int length) throws IOException {
+        final FileChannel channel = channelFor(file);
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Posting list at " + offset + " of " + file + " is truncated");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override public void release(final Path directory) {
+        channels.entrySet().removeIf(entry -> {
+            if (!entry.getKey().startsWith(directory)) {
+                return false;
+            }
+            try {
+                entry.getValue().close();
+            } catch (IOException e) {
+                logger.warn("Error closing {}", entry.getKey(), e);
+            }
+            return true;
+        });
+    }
+
+    private FileChannel channelFor(final Path file) throws IOException {
+        try {
+            return channels.computeIfAbsent(file, path -> {
+                try {
+                    return FileChannel.open(path, READ);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package pt.ua.ri.index;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Cursor over the posting lists of a term in several segments. Segments hold increasing ranges of document ids, so
+ * the lists are walked one after the other and never merged.
+ *
+ * @author tiago.novo
+ */
+final class ConcatenatedPostingsCursor implements PostingsCursor {
+
+    private final PostingsCursor[] cursors;
+    private final int size;
+    private int current;
+
+    ConcatenatedPostingsCursor(final List<PostingsCursor> cursors) {
+        checkNotNull(cursors);
+        checkArgument(!cursors.isEmpty(), "Must concatenate at least one cursor");
+        this.cursors = cursors.toArray(new PostingsCursor[cursors.size()]);
+        int size = 0;
+        for (final PostingsCursor cursor : this.cursors) {
+            size += cursor.size();
+        }
+        this.size = size;
+        this.current = 0;
+    }
+
+    @Override public int docId() {
+        return cursors[current].docId();
+    }
+
+    @Override public int next() {
+        int docId = cursors[current].next();
+        while (docId == NO_MORE_DOCS && current + 1 < cursors.length) {
+            docId = cursors[++current].next();
+        }
+        return docId;
+    }
+
+    @Override public int advance(final int target) {
+        int docId = cursors[current].advance(target);
+        while (docId == NO_MORE_DOCS && current + 1 < cursors.length) {
+            docId = cursors[++current].advance(target);
+        }
+        return docId;
+    }
+
+    @Override public float weight() {
+        return cursors[current].weight();
+    }
+
+    @Override public int[] positions() {
+        return cursors[current].positions();
+    }
+
+    @Override public float maxWeight(final int target) {
+        // target may land in any segment not yet walked past
+        float max = 0.0f;
+        for (int i = current; i < cursors.length; i++) {
+            max = Math.max(max, cursors[i].maxWeight(target));
+        }
+        return max;
+    }
+
+    @Override public int size() {
+        return size;
+    }
+}
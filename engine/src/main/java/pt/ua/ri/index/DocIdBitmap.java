@@ -0,0 +1,404 @@
+package pt.ua.ri.index;
+
+import gnu.trove.list.array.TCharArrayList;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static pt.ua.ri.index.PostingsCursor.NO_MORE_DOCS;
+
+/**
+ * Immutable set of document ids, compressed like a Roaring bitmap: ids are grouped by their high 16 bits and each group
+ * is a sorted array of the low 16 bits while it holds at most {@value #ARRAY_MAX} ids, or a plain bitmap of 2^16 bits
+ * once it is denser. Sparse and dense sets both stay small and intersections run a group at a time.
+ *
+ * @author tiago.novo
+ */
+public final class DocIdBitmap {
+
+    public static final DocIdBitmap EMPTY = new DocIdBitmap(new char[0], new Container[0]);
+
+    // past this, a bitmap of 8 KB is smaller than an array of 2 byte values
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = (1 << 16) / Long.SIZE;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Unions many bitmaps at once: each group is or'ed into a single bitmap, so the cost does not grow with the number
+     * of bitmaps already merged.
+     */
+    public static DocIdBitmap or(final Iterable<DocIdBitmap> bitmaps) {
+        checkNotNull(bitmaps);
+        final SortedMap<Character, long[]> groups = new TreeMap<>();
+        for (final DocIdBitmap bitmap : bitmaps) {
+            for (int i = 0; i < bitmap.keys.length; i++) {
+                bitmap.containers[i].orInto(groups.computeIfAbsent(bitmap.keys[i], key -> new long[WORDS]));
+            }
+        }
+        final char[] keys = new char[groups.size()];
+        final Container[] containers = new Container[keys.length];
+        int i = 0;
+        for (final Map.Entry<Character, long[]> group : groups.entrySet()) {
+            int cardinality = 0;
+            for (final long word : group.getValue()) {
+                cardinality += Long.bitCount(word);
+            }
+            keys[i] = group.getKey();
+            containers[i++] = Container.of(group.getValue(), cardinality);
+        }
+        return new DocIdBitmap(keys, containers);
+    }
+
+    /**
+     * Reads a bitmap written by {@link #write}, from the buffer's position on.
+     */
+    static DocIdBitmap read(final ByteBuffer buffer) {
+        checkNotNull(buffer);
+        final char[] keys = new char[buffer.getInt()];
+        final Container[] containers = new Container[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = buffer.getChar();
+            final int cardinality = buffer.getInt();
+            if (cardinality <= ARRAY_MAX) {
+                final char[] values = new char[cardinality];
+                buffer.asCharBuffer().get(values);
+                buffer.position(buffer.position() + cardinality * Character.BYTES);
+                containers[i] = new ArrayContainer(values);
+            } else {
+                final long[] words = new long[WORDS];
+                buffer.asLongBuffer().get(words);
+                buffer.position(buffer.position() + WORDS * Long.BYTES);
+                containers[i] = new BitmapContainer(words, cardinality);
+            }
+        }
+        return new DocIdBitmap(keys, containers);
+    }
+
+    // high 16 bits of the ids in each container, increasing
+    private final char[] keys;
+    private final Container[] containers;
+
+    private DocIdBitmap(final char[] keys, final Container[] containers) {
+        this.keys = keys;
+        this.containers = containers;
+    }
+
+    public boolean contains(final int docId) {
+        if (docId < 0) {
+            return false;
+        }
+        final int i = Arrays.binarySearch(keys, (char) (docId >>> 16));
+        return i >= 0 && containers[i].contains(docId & 0xFFFF);
+    }
+
+    /**
+     * @return the first id greater than or equal to {@code target}, or {@link PostingsCursor#NO_MORE_DOCS}.
+     */
+    public int next(final int target) {
+        if (target < 0) {
+            return next(0);
+        }
+        int i = Arrays.binarySearch(keys, (char) (target >>> 16));
+        int low = target & 0xFFFF;
+        if (i < 0) {
+            i = -i - 1;
+            low = 0;
+        }
+        for (; i < keys.length; i++, low = 0) {
+            final int found = containers[i].next(low);
+            if (found >= 0) {
+                return keys[i] << 16 | found;
+            }
+        }
+        return NO_MORE_DOCS;
+    }
+
+    public DocIdBitmap and(final DocIdBitmap other) {
+        checkNotNull(other);
+        final TCharArrayList andKeys = new TCharArrayList();
+        final List<Container> andContainers = new ArrayList<>();
+        for (int i = 0, j = 0; i < keys.length && j < other.keys.length; ) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                final Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    andKeys.add(keys[i]);
+                    andContainers.add(container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return new DocIdBitmap(andKeys.toArray(), andContainers.toArray(new Container[andContainers.size()]));
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (final Container container : containers) {
+            cardinality += container.cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * Layout: the container count, then per container its key, its cardinality and either the sorted low bits, as
+     * chars, or the {@value #WORDS} words of its bitmap.
+     */
+    void write(final DataOutput out) throws IOException {
+        out.writeInt(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            out.writeChar(keys[i]);
+            out.writeInt(containers[i].cardinality());
+            containers[i].write(out);
+        }
+    }
+
+    /**
+     * @return the number of bytes {@link #write} takes.
+     */
+    int serializedSize() {
+        int size = Integer.BYTES;
+        for (final Container container : containers) {
+            final int cardinality = container.cardinality();
+            size += Character.BYTES + Integer.BYTES +
+                    (cardinality <= ARRAY_MAX ? cardinality * Character.BYTES : WORDS * Long.BYTES);
+        }
+        return size;
+    }
+
+    @Override public String toString() {
+        return "DocIdBitmap{cardinality=" + cardinality() + ", containers=" + keys.length + '}';
+    }
+
+    private abstract static class Container {
+
+        abstract int cardinality();
+
+        abstract boolean contains(int low);
+
+        /**
+         * @return the first value greater than or equal to {@code low}, -1 if there is none.
+         */
+        abstract int next(int low);
+
+        abstract Container and(Container other);
+
+        abstract void orInto(long[] words);
+
+        abstract void write(DataOutput out) throws IOException;
+
+        static Container of(final long[] words, final int cardinality) {
+            if (cardinality > ARRAY_MAX) {
+                return new BitmapContainer(words, cardinality);
+            }
+            final char[] values = new char[cardinality];
+            int size = 0;
+            for (int w = 0; w < WORDS; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    values[size++] = (char) (w * Long.SIZE + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return new ArrayContainer(values);
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+        private final char[] values;
+
+        ArrayContainer(final char[] values) {
+            this.values = values;
+        }
+
+        @Override int cardinality() {
+            return values.length;
+        }
+
+        @Override boolean contains(final int low) {
+            return Arrays.binarySearch(values, (char) low) >= 0;
+        }
+
+        @Override int next(final int low) {
+            final int i = Arrays.binarySearch(values, (char) low);
+            final int at = i >= 0 ? i : -i - 1;
+            return at < values.length ? values[at] : -1;
+        }
+
+        @Override Container and(final Container other) {
+            final char[] result = new char[values.length];
+            int size = 0;
+            if (other instanceof ArrayContainer) {
+                final char[] others = ((ArrayContainer) other).values;
+                for (int i = 0, j = 0; i < values.length && j < others.length; ) {
+                    if (values[i] < others[j]) {
+                        i++;
+                    } else if (values[i] > others[j]) {
+                        j++;
+                    } else {
+                        result[size++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (final char value : values) {
+                    if (other.contains(value)) {
+                        result[size++] = value;
+                    }
+                }
+            }
+            return new ArrayContainer(Arrays.copyOf(result, size));
+        }
+
+        @Override void orInto(final long[] words) {
+            for (final char value : values) {
+                words[value >>> 6] |= 1L << value;
+            }
+        }
+
+        @Override void write(final DataOutput out) throws IOException {
+            for (final char value : values) {
+                out.writeChar(value);
+            }
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private final int cardinality;
+
+        BitmapContainer(final long[] words, final int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override int cardinality() {
+            return cardinality;
+        }
+
+        @Override boolean contains(final int low) {
+            return (words[low >>> 6] & 1L << low) != 0;
+        }
+
+        @Override int next(final int low) {
+            int w = low >>> 6;
+            long word = words[w] & -1L << low;
+            while (word == 0) {
+                if (++w == WORDS) {
+                    return -1;
+                }
+                word = words[w];
+            }
+            return w * Long.SIZE + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override Container and(final Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            final long[] others = ((BitmapContainer) other).words;
+            final long[] result = new long[WORDS];
+            int size = 0;
+            for (int w = 0; w < WORDS; w++) {
+                result[w] = words[w] & others[w];
+                size += Long.bitCount(result[w]);
+            }
+            return Container.of(result, size);
+        }
+
+        @Override void orInto(final long[] others) {
+            for (int w = 0; w < WORDS; w++) {
+                others[w] |= words[w];
+            }
+        }
+
+        @Override void write(final DataOutput out) throws IOException {
+            for (final long word : words) {
+                out.writeLong(word);
+            }
+        }
+    }
+
+    /**
+     * Collects ids in increasing order. Not thread safe.
+     */
+    public static final class Builder {
+        private final TCharArrayList keys;
+        private final List<Container> containers;
+        private int last;
+        // the container being filled: an array until it grows past ARRAY_MAX, then a bitmap
+        private char[] values;
+        private long[] words;
+        private int size;
+
+        private Builder() {
+            this.keys = new TCharArrayList();
+            this.containers = new ArrayList<>();
+            this.last = -1;
+            this.values = new char[16];
+        }
+
+        public Builder add(final int docId) {
+            checkArgument(docId > last, "Document ids must be added in increasing order");
+            if (last < 0 || docId >>> 16 != last >>> 16) {
+                flush();
+                keys.add((char) (docId >>> 16));
+            }
+            last = docId;
+            final int low = docId & 0xFFFF;
+            if (words == null && size == ARRAY_MAX) {
+                words = new long[WORDS];
+                for (int i = 0; i < size; i++) {
+                    words[values[i] >>> 6] |= 1L << values[i];
+                }
+            }
+            if (words != null) {
+                words[low >>> 6] |= 1L << low;
+            } else {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size << 1);
+                }
+                values[size] = (char) low;
+            }
+            size++;
+            return this;
+        }
+
+        private void flush() {
+            if (size > 0) {
+                containers.add(words != null ?
+                               new BitmapContainer(words, size) :
+                               new ArrayContainer(Arrays.copyOf(values, size)));
+            }
+            words = null;
+            size = 0;
+        }
+
+        public DocIdBitmap build() {
+            flush();
+            final DocIdBitmap bitmap = new DocIdBitmap(keys.toArray(), containers.toArray(new Container[0]));
+            keys.resetQuick();
+            containers.clear();
+            last = -1;
+            return bitmap;
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package pt.ua.ri.index;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import gnu.trove.list.array.TIntArrayList;
+import pt.ua.ri.document.DocumentProperties;
+import pt.ua.ri.document.DocumentSchema;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Predicate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+import static pt.ua.ri.index.PostingsCursor.NO_MORE_DOCS;
+
+/**
+ * Document properties stored by column, one file per schema field. A column keeps the distinct values of its field,
+ * sorted, and a fixed width code per document id, the smallest of 1, 2 or 4 bytes that fits the dictionary. Codes are
+ * memory mapped and a column is only opened, reading its value dictionary, the first time it is used, so opening a
+ * store reads nothing and a lookup is a single array access. Each
+ * value also gets a {@link DocIdBitmap} of its documents, read on first use, so field constraints can be intersected
+ * before searching. Values are stored lowercased. Document ids are dense and start at 1.
+ * <p>
+ * Documents indexed after the store was opened are kept in memory until it is {@link #write written}. Thread safe.
+ *
+ * @author tiago.novo
+ */
+final class DocumentStore<S extends DocumentSchema<S>> {
+
+    private static final String COLUMN_PREFIX = "docs.";
+    private static final String COLUMN_SUFFIX = ".col";
+    private static final int NO_VALUE = -1;
+
+    /**
+     * @param size the number of documents stored in {@code dir}. Columns may hold rows past it, written before a
+     *             crash kept the documents from being committed; those rows are ignored and indexed over.
+     */
+    static <S extends DocumentSchema<S>> DocumentStore<S> open(final Path dir, final S schema, final int size) {
+        checkNotNull(dir);
+        checkNotNull(schema);
+        checkArgument(size >= 0, "Size must not be negative");
+        final ImmutableMap.Builder<String, Supplier<Column>> columns = ImmutableMap.builder();
+        for (final String field : schema.getFields()) {
+            final Path file = columnFile(dir, field);
+            columns.put(field, Suppliers.memoize(() -> {
+                try {
+                    return Files.exists(file) ? Column.read(file, size + 1) : new Column();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        return new DocumentStore<>(columns.build(), size);
+    }
+
+    private static Path columnFile(final Path dir, final String field) {
+        return dir.resolve(COLUMN_PREFIX + field + COLUMN_SUFFIX);
+    }
+
+    // schema order
+    private final Map<String, Supplier<Column>> columns;
+    private volatile int size;
+
+    private DocumentStore(final Map<String, Supplier<Column>> columns, final int size) {
+        this.columns = columns;
+        this.size = size;
+    }
+
+    /**
+     * @return the number of documents, which is also the highest document id.
+     */
+    int size() {
+        return size;
+    }
+
+    synchronized void add(final int docId, final DocumentProperties<S> properties) {
+        checkArgument(docId > 0, "Document ids start at 1");
+        checkNotNull(properties);
+        for (final Map.Entry<String, Supplier<Column>> column : columns.entrySet()) {
+            properties.get(column.getKey())
+                    .map(value -> value.toString().toLowerCase())
+                    .ifPresent(value -> column.getValue().get().set(docId, value));
+        }
+        size = Math.max(size, docId);
+    }
+
+    /**
+     * @return the values of every field, in schema order and separated by commas; missing values are empty.
+     */
+    String getName(final int docId) {
+        checkArgument(docId > 0 && docId <= size, "Unknown document %s", docId);
+        final StringJoiner name = new StringJoiner(",");
+        for (final Supplier<Column> supplier : columns.values()) {
+            final Column column = supplier.get();
+            final int code = column.code(docId);
+            name.add(code == NO_VALUE ? "" : column.value(code));
+        }
+        return name.toString();
+    }
+
+    /**
+     * @param field case insensitive, as is {@code value}.
+     */
+    boolean hasValue(final int docId, final String field, final String value) {
+        checkNotNull(field);
+        checkNotNull(value);
+        final Column column = column(field);
+        if (column == null) {
+            return false;
+        }
+        final int code = column.codeOf(value.toLowerCase());
+        return code != NO_VALUE && column.code(docId) == code;
+    }
+
+    /**
+     * @param field case insensitive, as is {@code value}.
+     * @return the documents whose {@code field} is {@code value}.
+     */
+    DocIdBitmap documentsWith(final String field, final String value) {
+        checkNotNull(field);
+        checkNotNull(value);
+        final Column column = column(field);
+        return column == null ? DocIdBitmap.EMPTY : column.documentsWith(value.toLowerCase());
+    }
+
+    /**
+     * @param field  case insensitive.
+     * @param values tested once per distinct value of the field, never per document.
+     * @return the documents whose {@code field} has any value accepted by {@code values}.
+     */
+    DocIdBitmap documentsWith(final String field, final Predicate<String> values) {
+        checkNotNull(field);
+        checkNotNull(values);
+        final Column column = column(field);
+        return column == null ? DocIdBitmap.EMPTY : column.documentsWith(values);
+    }
+
+    /**
+     * @return the column of {@code field}, case insensitive, opening it if needed; {@code null} if there is none.
+     */
+    private Column column(final String field) {
+        final Supplier<Column> column = columns.get(field.toUpperCase());
+        return column == null ? null : column.get();
+    }
+
+    synchronized void write(final Path dir) throws IOException {
+        checkNotNull(dir);
+        for (final Map.Entry<String, Supplier<Column>> column : columns.entrySet()) {
+            column.getValue().get().write(columnFile(dir, column.getKey()), size + 1);
+        }
+    }
+
+    /**
+     * Stored rows are read from the mapped file, rows and values added since live in memory with codes following the
+     * stored ones. Stored values are never changed, so only reads past them take the column's lock.
+     */
+    private static final class Column {
+        private final String[] values;
+        private final ByteBuffer codes;
+        private final ByteBuffer bitmapOffsets;
+        private final ByteBuffer bitmaps;
+        // bitmaps of the stored values, read on first use; racing reads just read the same bitmap twice
+        private final DocIdBitmap[] storedBitmaps;
+        private final int width;
+        private final int rows;
+        private final Map<String, Integer> addedCodes;
+        private final List<String> addedValues;
+        // codes of the rows after the stored ones
+        private final TIntArrayList addedRows;
+
+        /**
+         * @param rows the rows to read, stored rows past them are dropped.
+         */
+        private static Column read(final Path file, final int rows) throws IOException {
+            final ByteBuffer mapping;
+            try (final FileChannel channel = FileChannel.open(file, READ)) {
+                mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            final int storedRows = mapping.getInt(0);
+            final int width = mapping.getInt(Integer.BYTES);
+            final ByteBuffer codes = mapping.duplicate();
+            codes.position(2 * Integer.BYTES).limit(2 * Integer.BYTES + storedRows * width);
+
+            final ByteBuffer dictionary = mapping.duplicate();
+            dictionary.position(codes.limit());
+            final String[] values = new String[dictionary.getInt()];
+            for (int i = 0; i < values.length; i++) {
+                final byte[] bytes = new byte[dictionary.getInt()];
+                dictionary.get(bytes);
+                values[i] = new String(bytes, UTF_8);
+            }
+            final ByteBuffer bitmapOffsets = dictionary.slice();
+            bitmapOffsets.limit(values.length * Integer.BYTES);
+            final ByteBuffer bitmaps = mapping.duplicate();
+            bitmaps.position(dictionary.position() + bitmapOffsets.limit());
+            return new Column(values, codes.slice(), width, Math.min(rows, storedRows), bitmapOffsets,
+                    bitmaps.slice());
+        }
+
+        private static int widthFor(final int values) {
+            // the highest code of each width marks a missing value
+            return values < 0xFF ? Byte.BYTES : values < 0xFFFF ? Short.BYTES : Integer.BYTES;
+        }
+
+        private Column() {
+            this(new String[0], ByteBuffer.allocate(0), Byte.BYTES, 0, ByteBuffer.allocate(0), ByteBuffer.allocate(0));
+        }
+
+        private Column(final String[] values, final ByteBuffer codes, final int width, final int rows,
+                       final ByteBuffer bitmapOffsets, final ByteBuffer bitmaps) {
+            this.values = values;
+            this.codes = codes;
+            this.bitmapOffsets = bitmapOffsets;
+            this.bitmaps = bitmaps;
+            this.storedBitmaps = new DocIdBitmap[values.length];
+            this.width = width;
+            this.rows = rows;
+            this.addedCodes = new HashMap<>();
+            this.addedValues = new ArrayList<>();
+            this.addedRows = new TIntArrayList();
+        }
+
+        int code(final int docId) {
+            if (docId < rows) {
+                return storedCode(docId);
+            }
+            synchronized (this) {
+                final int row = docId - rows;
+                return row < addedRows.size() ? addedRows.get(row) : NO_VALUE;
+            }
+        }
+
+        int codeOf(final String value) {
+            final int stored = Arrays.binarySearch(values, value);
+            if (stored >= 0) {
+                return stored;
+            }
+            synchronized (this) {
+                return addedCodes.getOrDefault(value, NO_VALUE);
+            }
+        }
+
+        String value(final int code) {
+            if (code < values.length) {
+                return values[code];
+            }
+            synchronized (this) {
+                return addedValues.get(code - values.length);
+            }
+        }
+
+        DocIdBitmap documentsWith(final String value) {
+            final int code = codeOf(value);
+            return code == NO_VALUE ? DocIdBitmap.EMPTY : documentsWith(code);
+        }
+
+        DocIdBitmap documentsWith(final Predicate<String> matching) {
+            final List<DocIdBitmap> matches = new ArrayList<>();
+            for (int code = 0; code < values.length; code++) {
+                if (matching.test(values[code])) {
+                    matches.add(documentsWith(code));
+                }
+            }
+            final List<String> added;
+            synchronized (this) {
+                added = new ArrayList<>(addedValues);
+            }
+            for (int i = 0; i < added.size(); i++) {
+                if (matching.test(added.get(i))) {
+                    matches.add(documentsWith(values.length + i));
+                }
+            }
+            return DocIdBitmap.or(matches);
+        }
+
+        private DocIdBitmap documentsWith(final int code) {
+            final DocIdBitmap stored = code < values.length ? storedBitmap(code) : DocIdBitmap.EMPTY;
+            synchronized (this) {
+                if (addedRows.isEmpty()) {
+                    return stored;
+                }
+                final DocIdBitmap.Builder documents = DocIdBitmap.builder();
+                for (int docId = stored.next(0); docId != NO_MORE_DOCS; docId = stored.next(docId + 1)) {
+                    documents.add(docId);
+                }
+                for (int row = 0; row < addedRows.size(); row++) {
+                    if (addedRows.get(row) == code) {
+                        documents.add(rows + row);
+                    }
+                }
+                return documents.build();
+            }
+        }
+
+        private DocIdBitmap storedBitmap(final int code) {
+            DocIdBitmap bitmap = storedBitmaps[code];
+            if (bitmap == null) {
+                final ByteBuffer buffer = bitmaps.duplicate();
+                buffer.position(bitmapOffsets.getInt(code * Integer.BYTES));
+                bitmap = DocIdBitmap.read(buffer);
+                if (bitmap.next(rows) != NO_MORE_DOCS) {
+                    // holds dropped rows
+                    final DocIdBitmap.Builder documents = DocIdBitmap.builder();
+                    for (int docId = bitmap.next(0); docId < rows; docId = bitmap.next(docId + 1)) {
+                        documents.add(docId);
+                    }
+                    bitmap = documents.build();
+                }
+                storedBitmaps[code] = bitmap;
+            }
+            return bitmap;
+        }
+
+        synchronized void set(final int docId, final String value) {
+            checkArgument(docId >= rows, "Stored documents are read-only");
+            int code = codeOf(value);
+            if (code == NO_VALUE) {
+                code = values.length + addedValues.size();
+                addedValues.add(value);
+                addedCodes.put(value, code);
+            }
+            final int row = docId - rows;
+            while (addedRows.size() <= row) {
+                addedRows.add(NO_VALUE);
+            }
+            addedRows.set(row, code);
+        }
+
+        /**
+         * Layout: row count, code width, the codes, the dictionary, as a count followed by length prefixed UTF-8
+         * values, and the bitmap of each value, after a table of their offsets. Added values are merged in, so codes
+         * are renumbered to keep the dictionary sorted.
+         */
+        synchronized void write(final Path file, final int totalRows) throws IOException {
+            final SortedSet<String> merged = new TreeSet<>(Arrays.asList(values));
+            merged.addAll(addedValues);
+            final String[] dictionary = merged.toArray(new String[merged.size()]);
+            final int[] renumbered = new int[values.length + addedValues.size()];
+            for (int code = 0; code < renumbered.length; code++) {
+                renumbered[code] = Arrays.binarySearch(dictionary, value(code));
+            }
+
+            final int newWidth = widthFor(dictionary.length);
+            final DocIdBitmap.Builder[] documents = new DocIdBitmap.Builder[dictionary.length];
+            Arrays.setAll(documents, code -> DocIdBitmap.builder());
+            try (final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(file)))) {
+                out.writeInt(totalRows);
+                out.writeInt(newWidth);
+                for (int docId = 0; docId < totalRows; docId++) {
+                    final int code = code(docId);
+                    writeCode(out, newWidth, code == NO_VALUE ? NO_VALUE : renumbered[code]);
+                    if (code != NO_VALUE) {
+                        documents[renumbered[code]].add(docId);
+                    }
+                }
+                out.writeInt(dictionary.length);
+                for (final String value : dictionary) {
+                    final byte[] bytes = value.getBytes(UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                final DocIdBitmap[] bitmaps = new DocIdBitmap[dictionary.length];
+                int offset = 0;
+                for (int code = 0; code < bitmaps.length; code++) {
+                    bitmaps[code] = documents[code].build();
+                    out.writeInt(offset);
+                    offset += bitmaps[code].serializedSize();
+                }
+                for (final DocIdBitmap bitmap : bitmaps) {
+                    bitmap.write(out);
+                }
+            }
+        }
+
+        private int storedCode(final int row) {
+            switch (width) {
+                case Byte.BYTES:
+                    final int b = codes.get(row) & 0xFF;
+                    return b == 0xFF ? NO_VALUE : b;
+                case Short.BYTES:
+                    final int s = codes.getShort(row * Short.BYTES) & 0xFFFF;
+                    return s == 0xFFFF ? NO_VALUE : s;
+                default:
+                    return codes.getInt(row * Integer.BYTES);
+            }
+        }
+
+        private static void writeCode(final DataOutput out, final int width, final int code) throws IOException {
+            switch (width) {
+                case Byte.BYTES:
+                    out.writeByte(code);
+                    break;
+                case Short.BYTES:
+                    out.writeShort(code);
+                    break;
+                default:
+                    out.writeInt(code);
+            }
+        }
+    }
+}
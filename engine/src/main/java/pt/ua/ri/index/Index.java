@@ -16,10 +16,10 @@
  */
 package pt.ua.ri.index;
 
-import pt.ua.ri.config.Configuration;
 import pt.ua.ri.document.Document;
 import pt.ua.ri.document.DocumentSchema;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -28,21 +28,59 @@ import java.util.Optional;
  */
 public interface Index<S extends DocumentSchema<S>> {
 
-    String DOCUMENT_FILENAME = Configuration.DOCS_FILE;
     String SUB_INDEX_FILENAME = "sub_results.txt";
     String VERSION_DIR_PREFIX = "version";
+    String OPEN_BOUND = "*";
 
     boolean documentsHasField(int doc_id, String field, String value);
 
+    /**
+     * Field constraints as a filter: searches can skip the documents outside it before scoring them.
+     *
+     * @return the documents whose {@code field} has {@code value}, both case insensitive.
+     */
+    DocIdBitmap documentsWithField(String field, String value);
+
+    /**
+     * Bounds compare in the order the schema gives the field, see {@link DocumentSchema#rangeKey(String)}.
+     *
+     * @param from inclusive, or {@link #OPEN_BOUND}.
+     * @param to   inclusive, including the values it prefixes, or {@link #OPEN_BOUND}.
+     * @return the documents whose {@code field} is in range, none if the field has no order.
+     */
+    DocIdBitmap documentsInRange(String field, String from, String to);
+
     void finish();
 
     Optional<IndexTuple> get(String token);
 
+    /**
+     * Lazy alternative to {@link #get(String)}: the returned cursor decodes postings only as far as it is moved.
+     */
+    Optional<PostingsCursor> getPostings(String token);
+
+    /**
+     * @return an upper bound of the normalized frequency of {@code token} in any document, 0 if it is not indexed.
+     */
+    float getMaxWeight(String token);
+
     String getDocumentName(int docId);
 
+    /**
+     * @return a number that changes whenever searches may return different results, i.e. when the index is rewritten.
+     */
+    long getVersion();
+
     int index(Document<S> document);
 
     int numberOfDocuments();
 
     Map<String, Optional<IndexTuple>> query(String query);
+
+    Map<String, Optional<PostingsCursor>> queryPostings(String query);
+
+    /**
+     * @return the terms of {@code query} after tokenization and normalization, in query order.
+     */
+    List<String> terms(String query);
 }
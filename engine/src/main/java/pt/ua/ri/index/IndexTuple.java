@@ -33,4 +33,9 @@ public interface IndexTuple {
     String getTerm();
 
     IndexTuple merge(IndexTuple value);
+
+    /**
+     * @return a cursor over a snapshot of the postings, in increasing document id order.
+     */
+    PostingsCursor cursor();
 }
@@ -0,0 +1,165 @@
+package pt.ua.ri.index;
+
+import gnu.trove.list.TFloatList;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Sorted term dictionary of a division file. Maps each term to the offset and length of its posting list, so a
+ * lookup is a binary search followed by a single positional read. Also keeps the document frequency and the highest
+ * weight of each term, which lets queries bound a term's contribution without reading its postings.
+ *
+ * @author tiago.novo
+ */
+final class Lexicon {
+
+    private static final Lexicon EMPTY = new Lexicon(new String[0], new long[0], new int[0], new int[0], new float[0]);
+
+    static Lexicon empty() {
+        return EMPTY;
+    }
+
+    static Lexicon read(final Path path) throws IOException {
+        checkNotNull(path);
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            final int size = in.readInt();
+            final String[] terms = new String[size];
+            final long[] offsets = new long[size];
+            final int[] lengths = new int[size];
+            final int[] documentFrequencies = new int[size];
+            final float[] maxWeights = new float[size];
+            for (int i = 0; i < size; i++) {
+                terms[i] = in.readUTF();
+                offsets[i] = in.readLong();
+                lengths[i] = in.readInt();
+                documentFrequencies[i] = in.readInt();
+                maxWeights[i] = in.readFloat();
+            }
+            return new Lexicon(terms, offsets, lengths, documentFrequencies, maxWeights);
+        }
+    }
+
+    private final String[] terms;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final int[] documentFrequencies;
+    private final float[] maxWeights;
+
+    private Lexicon(final String[] terms,
+            final long[] offsets,
+            final int[] lengths,
+            final int[] documentFrequencies,
+            final float[] maxWeights) {
+        this.terms = terms;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.documentFrequencies = documentFrequencies;
+        this.maxWeights = maxWeights;
+    }
+
+    Optional<Entry> get(final String term) {
+        checkNotNull(term);
+        final int idx = Arrays.binarySearch(terms, term);
+        return idx >= 0 ? Optional.of(getEntry(idx)) : Optional.empty();
+    }
+
+    int size() {
+        return terms.length;
+    }
+
+    /**
+     * @return the {@code i}-th term, in term order.
+     */
+    String getTerm(final int i) {
+        return terms[i];
+    }
+
+    Entry getEntry(final int i) {
+        return new Entry(offsets[i], lengths[i], documentFrequencies[i], maxWeights[i]);
+    }
+
+    static final class Entry {
+        private final long offset;
+        private final int length;
+        private final int documentFrequency;
+        private final float maxWeight;
+
+        private Entry(final long offset, final int length, final int documentFrequency, final float maxWeight) {
+            this.offset = offset;
+            this.length = length;
+            this.documentFrequency = documentFrequency;
+            this.maxWeight = maxWeight;
+        }
+
+        long getOffset() {
+            return offset;
+        }
+
+        int getLength() {
+            return length;
+        }
+
+        int getDocumentFrequency() {
+            return documentFrequency;
+        }
+
+        float getMaxWeight() {
+            return maxWeight;
+        }
+    }
+
+    static final class Builder {
+        private final List<String> terms = new ArrayList<>();
+        private final TLongList offsets = new TLongArrayList();
+        private final TIntList lengths = new TIntArrayList();
+        private final TIntList documentFrequencies = new TIntArrayList();
+        private final TFloatList maxWeights = new TFloatArrayList();
+
+        Builder add(final String term,
+                final long offset,
+                final int length,
+                final int documentFrequency,
+                final float maxWeight) {
+            checkNotNull(term);
+            checkArgument(offset >= 0 && length >= 0, "Offset and length must not be negative");
+            checkState(terms.isEmpty() || terms.get(terms.size() - 1).compareTo(term) < 0, "Terms are not in order",
+                    term);
+            terms.add(term);
+            offsets.add(offset);
+            lengths.add(length);
+            documentFrequencies.add(documentFrequency);
+            maxWeights.add(maxWeight);
+            return this;
+        }
+
+        void write(final Path path) throws IOException {
+            checkNotNull(path);
+            try (final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(path)))) {
+                out.writeInt(terms.size());
+                for (int i = 0; i < terms.size(); i++) {
+                    out.writeUTF(terms.get(i));
+                    out.writeLong(offsets.get(i));
+                    out.writeInt(lengths.get(i));
+                    out.writeInt(documentFrequencies.get(i));
+                    out.writeFloat(maxWeights.get(i));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package pt.ua.ri.index;
+
+import com.google.common.collect.ImmutableList;
+import pt.ua.ri.utils.Divisions;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * What an index is made of, so it can be opened without listing or parsing any of its files: the schema fields its
+ * documents were stored with, the number of documents and its segments, each a directory of division files with the
+ * codec and division boundaries it was written with. Segments hold increasing ranges of document ids, in order.
+ * Written by {@link Index#finish()} and by segment merges and replaced atomically, so an index is always described by
+ * either the old or the new manifest. Immutable.
+ *
+ * @author tiago.novo
+ */
+final class Manifest {
+
+    static final String FILENAME = "manifest";
+    static final String SEGMENT_DIR_PREFIX = "segment";
+    private static final int MAGIC = 0x52494d46;
+    private static final int FORMAT_VERSION = 1;
+
+    static Manifest empty(final Iterable<String> fields) {
+        return new Manifest(ImmutableList.copyOf(fields), 0, 0, ImmutableList.of());
+    }
+
+    /**
+     * @return the manifest of the index in {@code dir}, empty if there is none yet.
+     */
+    static Optional<Manifest> read(final Path dir) throws IOException {
+        checkNotNull(dir);
+        final Path file = dir.resolve(FILENAME);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            final int magic = in.readInt();
+            final int version = in.readInt();
+            if (magic != MAGIC || version != FORMAT_VERSION) {
+                throw new IOException("Unknown index manifest " + file);
+            }
+            final List<String> fields = readStrings(in);
+            final int documents = in.readInt();
+            final int nextSegment = in.readInt();
+            final ImmutableList.Builder<SegmentInfo> segments = ImmutableList.builder();
+            for (int i = in.readInt(); i > 0; i--) {
+                final String name = in.readUTF();
+                final PostingFormat format = PostingFormat.valueOf(in.readUTF());
+                final int terms = in.readInt();
+                final long bytes = in.readLong();
+                segments.add(new SegmentInfo(name, format, terms, bytes, Divisions.of(readStrings(in))));
+            }
+            return Optional.of(new Manifest(fields, documents, nextSegment, segments.build()));
+        }
+    }
+
+    private static List<String> readStrings(final DataInput in) throws IOException {
+        final ImmutableList.Builder<String> strings = ImmutableList.builder();
+        for (int i = in.readInt(); i > 0; i--) {
+            strings.add(in.readUTF());
+        }
+        return strings.build();
+    }
+
+    private static void writeStrings(final DataOutput out, final List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (final String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    private final List<String> fields;
+    private final int documents;
+    private final int nextSegment;
+    private final List<SegmentInfo> segments;
+
+    private Manifest(final List<String> fields,
+            final int documents,
+            final int nextSegment,
+            final List<SegmentInfo> segments) {
+        this.fields = fields;
+        this.documents = documents;
+        this.nextSegment = nextSegment;
+        this.segments = segments;
+    }
+
+    /**
+     * @return the schema fields, in schema order.
+     */
+    List<String> getFields() {
+        return fields;
+    }
+
+    int getDocuments() {
+        return documents;
+    }
+
+    List<SegmentInfo> getSegments() {
+        return segments;
+    }
+
+    /**
+     * @return the number of the next directory written into the index. Numbers are never reused, so a directory name
+     * is never taken by two segments, or sub-indexes, of the same index.
+     */
+    int getNextSegment() {
+        return nextSegment;
+    }
+
+    /**
+     * @return this manifest with {@code segment}, holding the documents added since, after its segments.
+     */
+    Manifest withSegment(final SegmentInfo segment, final int documents, final int nextSegment) {
+        checkNotNull(segment);
+        checkArgument(documents >= this.documents, "Documents are never removed");
+        checkArgument(nextSegment >= this.nextSegment, "Directory numbers are never reused");
+        return new Manifest(fields, documents, nextSegment,
+                ImmutableList.<SegmentInfo>builder().addAll(segments).add(segment).build());
+    }
+
+    /**
+     * @return this manifest with {@code documents} and no new segment, for documents without any term.
+     */
+    Manifest withDocuments(final int documents, final int nextSegment) {
+        checkArgument(documents >= this.documents, "Documents are never removed");
+        checkArgument(nextSegment >= this.nextSegment, "Directory numbers are never reused");
+        return new Manifest(fields, documents, nextSegment, segments);
+    }
+
+    /**
+     * @param merged adjacent segments of this manifest, in order.
+     * @return this manifest with {@code segment} in place of the {@code merged} ones.
+     */
+    Manifest withMerged(final List<SegmentInfo> merged, final SegmentInfo segment, final int nextSegment) {
+        checkNotNull(segment);
+        checkArgument(!merged.isEmpty(), "Nothing was merged");
+        checkArgument(nextSegment >= this.nextSegment, "Directory numbers are never reused");
+        final int start = segments.indexOf(merged.get(0));
+        checkState(start >= 0 && start + merged.size() <= segments.size() &&
+                   segments.subList(start, start + merged.size()).equals(merged),
+                "Merged segments %s are not part of %s", merged, this);
+        return new Manifest(fields, documents, nextSegment, ImmutableList.<SegmentInfo>builder()
+                .addAll(segments.subList(0, start))
+                .add(segment)
+                .addAll(segments.subList(start + merged.size(), segments.size()))
+                .build());
+    }
+
+    void write(final Path dir) throws IOException {
+        checkNotNull(dir);
+        final Path temporary = dir.resolve(FILENAME + ".tmp");
+        try (final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeStrings(out, fields);
+            out.writeInt(documents);
+            out.writeInt(nextSegment);
+            out.writeInt(segments.size());
+            for (final SegmentInfo segment : segments) {
+                out.writeUTF(segment.name);
+                out.writeUTF(segment.format.name());
+                out.writeInt(segment.terms);
+                out.writeLong(segment.bytes);
+                writeStrings(out, segment.divisions.getBoundaries());
+            }
+        }
+        Files.move(temporary, dir.resolve(FILENAME), ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    @Override public String toString() {
+        return "Manifest{documents=" + documents + ", segments=" + segments + '}';
+    }
+
+    /**
+     * An immutable directory of division files.
+     */
+    static final class SegmentInfo {
+        private final String name;
+        private final PostingFormat format;
+        private final int terms;
+        // of its division files
+        private final long bytes;
+        private final Divisions divisions;
+
+        SegmentInfo(final String name,
+                final PostingFormat format,
+                final int terms,
+                final long bytes,
+                final Divisions divisions) {
+            this.name = checkNotNull(name);
+            this.format = checkNotNull(format);
+            this.terms = terms;
+            this.bytes = bytes;
+            this.divisions = checkNotNull(divisions);
+        }
+
+        String getName() {
+            return name;
+        }
+
+        PostingFormat getFormat() {
+            return format;
+        }
+
+        int getTerms() {
+            return terms;
+        }
+
+        long getBytes() {
+            return bytes;
+        }
+
+        Divisions getDivisions() {
+            return divisions;
+        }
+
+        @Override public String toString() {
+            return name + "{format=" + format + ", terms=" + terms + ", bytes=" + bytes + ", divisions=" +
+                   divisions.size() + '}';
+        }
+    }
+}
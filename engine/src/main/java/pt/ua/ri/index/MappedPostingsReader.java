@@ -0,0 +1,66 @@
+package pt.ua.ri.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Maps every index file once and hands out read-only views over the mapping, so binary posting lists are decoded
+ * straight from the page cache and concurrent searchers share the same memory.
+ *
+ * @author tiago.novo
+ */
+class MappedPostingsReader implements PostingsReader {
+    private static final Logger logger = LoggerFactory.getLogger(MappedPostingsReader.class);
+    private final Map<Path, MappedByteBuffer> mappings = new ConcurrentHashMap<>();
+    private final ChannelPostingsReader fallback = new ChannelPostingsReader();
+
+    @Override public ByteBuffer read(final Path file, final long offset, final int length) throws IOException {
+        final MappedByteBuffer mapping = mappingFor(file);
+        if (mapping == null) {
+            return fallback.read(file, offset, length);
+        }
+        if (offset + length > mapping.capacity()) {
+            throw new EOFException("Posting list at " + offset + " of " + file + " is truncated");
+        }
+        final ByteBuffer view = mapping.duplicate();
+        view.position((int) offset).limit((int) offset + length);
+        return view.slice().asReadOnlyBuffer();
+    }
+
+    @Override public void release(final Path directory) {
+        // mappings are only unmapped once collected
+        mappings.keySet().removeIf(path -> path.startsWith(directory));
+        fallback.release(directory);
+    }
+
+    private MappedByteBuffer mappingFor(final Path file) throws IOException {
+        try {
+            return mappings.computeIfAbsent(file, path -> {
+                try (final FileChannel channel = FileChannel.open(path, READ)) {
+                    if (channel.size() > Integer.MAX_VALUE) {
+                        logger.warn("{} is too large to be mapped, reading it through its channel.", path);
+                        return null;
+                    }
+                    logger.debug("Mapping {}", path);
+                    return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
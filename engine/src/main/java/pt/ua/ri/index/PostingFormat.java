@@ -0,0 +1,63 @@
+package pt.ua.ri.index;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * On-disk representation of the posting lists in the final index files.
+ *
+ * @author tiago.novo
+ */
+public enum PostingFormat {
+    /**
+     * One human readable line per term. Several times larger and slower to parse, kept for debugging.
+     */
+    TEXT {
+        @Override byte[] encode(final IndexTuple tuple) {
+            return tuple.toString().getBytes(UTF_8);
+        }
+
+        @Override IndexTuple decode(final AbstractIndex<?> index, final String term, final ByteBuffer buffer) {
+            return index.decodeIndexTuple(UTF_8.decode(buffer).toString().trim());
+        }
+
+        @Override PostingsCursor cursor(final AbstractIndex<?> index, final String term, final ByteBuffer buffer) {
+            return decode(index, term, buffer).cursor();
+        }
+    },
+    /**
+     * Delta-gapped document ids and positions in variable-byte encoding, weights as 32 bit floats. Postings are
+     * grouped in blocks behind a skip table, so cursors only decode the blocks they stop in.
+     */
+    BINARY {
+        @Override byte[] encode(final IndexTuple tuple) {
+            final ByteArrayDataOutput out = ByteStreams.newDataOutput();
+            try {
+                ((AbstractIndexTuple) tuple).write(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
+
+        @Override IndexTuple decode(final AbstractIndex<?> index, final String term, final ByteBuffer buffer) {
+            return index.readIndexTuple(term, buffer);
+        }
+
+        @Override PostingsCursor cursor(final AbstractIndex<?> index, final String term, final ByteBuffer buffer) {
+            return index.readPostings(buffer);
+        }
+    };
+
+    abstract byte[] encode(IndexTuple tuple);
+
+    abstract IndexTuple decode(AbstractIndex<?> index, String term, ByteBuffer buffer);
+
+    abstract PostingsCursor cursor(AbstractIndex<?> index, String term, ByteBuffer buffer);
+}
@@ -0,0 +1,185 @@
+package pt.ua.ri.index;
+
+import gnu.trove.list.TIntList;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import pt.ua.ri.tokenizer.Token;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static gnu.trove.impl.Constants.DEFAULT_CAPACITY;
+import static gnu.trove.impl.Constants.DEFAULT_LOAD_FACTOR;
+
+/**
+ * In-memory inverted buffer used while indexing. Terms are found by their {@link Token#getId() term id} and given a
+ * dense slot of their own, and the postings of each term are appended to a single growable {@code int[]} as
+ * {@code docId, weight bits, tf[, positions...]}, so buffering a posting neither hashes a string nor allocates anything
+ * but the occasional array growth. Not thread safe.
+ *
+ * @author tiago.novo
+ */
+final class PostingsBuffer {
+
+    private static final int NO_TERM = -1;
+    private static final Comparator<Token> BY_TERM = Comparator.comparing(Token::getString);
+    private static final int INITIAL_TERMS = 1024;
+    private static final int INITIAL_POSTINGS = 8;
+    // hash map entry, token reference and the postings array header
+    private static final long TERM_BYTES = 48;
+
+    private final boolean storePositions;
+    // term id -> slot
+    private final TIntIntMap slots;
+    private Token[] terms;
+    private int[][] postings;
+    private int[] lengths;
+    private int size;
+    private long bytes;
+
+    PostingsBuffer(final boolean storePositions) {
+        this.storePositions = storePositions;
+        this.slots = new TIntIntHashMap(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR, NO_TERM, NO_TERM);
+        clear();
+    }
+
+    /**
+     * Appends the posting of {@code term} in document {@code docId}. Documents must be added in a single pass, i.e.
+     * every term at most once per document.
+     *
+     * @return the number of bytes the buffer grew by.
+     */
+    long add(final Token term, final int docId, final float weight, final TIntList positions) {
+        checkNotNull(term);
+        checkArgument(!positions.isEmpty(), "A posting needs at least one occurrence");
+        final long before = bytes;
+        int slot = slots.get(term.getId());
+        if (slot == NO_TERM) {
+            slot = intern(term);
+        }
+        final int tf = positions.size();
+        final int needed = 3 + (storePositions ? tf : 0);
+        final int offset = ensureCapacity(slot, needed);
+        final int[] data = postings[slot];
+        data[offset] = docId;
+        data[offset + 1] = Float.floatToRawIntBits(weight);
+        data[offset + 2] = tf;
+        if (storePositions) {
+            positions.toArray(data, 0, offset + 3, tf);
+        }
+        lengths[slot] += needed;
+        return bytes - before;
+    }
+
+    /**
+     * @return approximate number of heap bytes held by the buffered postings.
+     */
+    long getBytes() {
+        return bytes;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        slots.clear();
+        terms = new Token[INITIAL_TERMS];
+        postings = new int[INITIAL_TERMS][];
+        lengths = new int[INITIAL_TERMS];
+        size = 0;
+        bytes = 0;
+    }
+
+    /**
+     * @return the buffered terms in natural order, the order sub-indexes are written in.
+     */
+    Token[] sortedTerms() {
+        final Token[] sorted = Arrays.copyOf(terms, size);
+        Arrays.sort(sorted, BY_TERM);
+        return sorted;
+    }
+
+    Postings postings(final Token term) {
+        final int slot = slots.get(term.getId());
+        checkArgument(slot != NO_TERM, "Term is not buffered", term);
+        return new Postings(postings[slot], lengths[slot]);
+    }
+
+    private int intern(final Token term) {
+        if (size == terms.length) {
+            final int capacity = size << 1;
+            terms = Arrays.copyOf(terms, capacity);
+            postings = Arrays.copyOf(postings, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        final int slot = size++;
+        terms[slot] = term;
+        postings[slot] = new int[INITIAL_POSTINGS];
+        slots.put(term.getId(), slot);
+        bytes += TERM_BYTES + (long) Integer.BYTES * INITIAL_POSTINGS;
+        return slot;
+    }
+
+    private int ensureCapacity(final int slot, final int needed) {
+        final int length = lengths[slot];
+        final int[] data = postings[slot];
+        if (length + needed > data.length) {
+            final int capacity = Math.max(data.length + (data.length >> 1), length + needed);
+            postings[slot] = Arrays.copyOf(data, capacity);
+            bytes += (long) Integer.BYTES * (capacity - data.length);
+        }
+        return length;
+    }
+
+    /**
+     * Cursor over the postings of a single term, in the order they were added.
+     */
+    final class Postings {
+        private final int[] data;
+        private final int length;
+        private int offset;
+        private int next;
+
+        private Postings(final int[] data, final int length) {
+            this.data = data;
+            this.length = length;
+            this.offset = -1;
+            this.next = 0;
+        }
+
+        boolean next() {
+            if (next >= length) {
+                return false;
+            }
+            offset = next;
+            next += 3 + (storePositions ? getTermFrequency() : 0);
+            return true;
+        }
+
+        int getDocId() {
+            return data[offset];
+        }
+
+        float getWeight() {
+            return Float.intBitsToFloat(data[offset + 1]);
+        }
+
+        int getTermFrequency() {
+            return data[offset + 2];
+        }
+
+        /**
+         * @return a copy of the positions, empty when the buffer does not store positions.
+         */
+        int[] getPositions() {
+            return storePositions ? Arrays.copyOfRange(data, offset + 3, offset + 3 + getTermFrequency()) : new int[0];
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package pt.ua.ri.index;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Stored posting lists of the most recently used terms, as read from each segment, bounded by their size in bytes
+ * rather than by their number, so a handful of very frequent terms cannot push out everything else unnoticed. Thread
+ * safe.
+ * <p>
+ * Lists are kept encoded, so both {@link Index#get(String)} and the cursors of {@link Index#getPostings(String)} are
+ * served from the cache, and cursors still decode one block at a time and bound scores by block. Terms found in no
+ * segment are cached too.
+ *
+ * @author tiago.novo
+ */
+final class PostingsCache {
+
+    // cache entry, term and list
+    private static final int TERM_BYTES = 160;
+    // list element and buffer of a single segment
+    private static final int SEGMENT_BYTES = 64;
+
+    private static int weigh(final String term, final List<StoredPostings> postings) {
+        long bytes = TERM_BYTES + 2L * term.length();
+        for (final StoredPostings stored : postings) {
+            bytes += SEGMENT_BYTES + stored.buffer.capacity();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private final Cache<String, List<StoredPostings>> cache;
+    // bumped on every invalidation, so lists loaded before it are not cached after it
+    private volatile long generation;
+
+    /**
+     * @param maximumBytes bytes the cached posting lists may take, 0 disables caching.
+     */
+    PostingsCache(final long maximumBytes) {
+        checkArgument(maximumBytes >= 0, "Cache size must not be negative");
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher(PostingsCache::weigh)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @return the cached posting lists of {@code term}, read with {@code loader} if they are not cached yet.
+     */
+    List<StoredPostings> get(final String term, final Loader loader) throws IOException {
+        checkNotNull(term);
+        final List<StoredPostings> cached = cache.getIfPresent(term);
+        if (cached != null) {
+            return cached;
+        }
+        final long loadedGeneration = generation;
+        final List<StoredPostings> loaded = loader.load(term);
+        synchronized (this) {
+            if (generation == loadedGeneration) {
+                cache.put(term, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Drops every cached list, and every list still being loaded. Lists loaded from then on must already see what
+     * made the cached ones stale.
+     */
+    synchronized void invalidateAll() {
+        generation++;
+        cache.invalidateAll();
+    }
+
+    CacheStats stats() {
+        return cache.stats();
+    }
+
+    @FunctionalInterface interface Loader {
+        List<StoredPostings> load(String term) throws IOException;
+    }
+
+    /**
+     * Posting list of a term as stored in a single segment.
+     */
+    static final class StoredPostings {
+        private final PostingFormat format;
+        private final ByteBuffer buffer;
+
+        StoredPostings(final PostingFormat format, final ByteBuffer buffer) {
+            this.format = checkNotNull(format);
+            this.buffer = checkNotNull(buffer);
+        }
+
+        PostingFormat getFormat() {
+            return format;
+        }
+
+        /**
+         * @return a buffer of its own over the stored bytes, which are shared and must only be read.
+         */
+        ByteBuffer getBuffer() {
+            return buffer.duplicate();
+        }
+    }
+}
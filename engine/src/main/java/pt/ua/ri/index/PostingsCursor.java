@@ -0,0 +1,54 @@
+package pt.ua.ri.index;
+
+/**
+ * Forward-only iterator over a posting list in increasing document id order. Freshly created cursors are positioned
+ * before the first document.
+ *
+ * @author tiago.novo
+ */
+public interface PostingsCursor {
+
+    int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    /**
+     * @return the current document id, -1 before the first call to {@link #next()} and {@link #NO_MORE_DOCS} once the
+     * cursor is exhausted.
+     */
+    int docId();
+
+    /**
+     * @return the next document id or {@link #NO_MORE_DOCS}.
+     */
+    int next();
+
+    /**
+     * Moves to the first document whose id is greater than or equal to {@code target}. Never moves backwards.
+     *
+     * @return the new current document id or {@link #NO_MORE_DOCS}.
+     */
+    int advance(int target);
+
+    /**
+     * @return the normalized term frequency in the current document.
+     */
+    float weight();
+
+    /**
+     * @return the sorted positions of the term in the current document, empty if the index does not store them. The
+     * array must not be modified.
+     */
+    int[] positions();
+
+    /**
+     * Shallow look-ahead that neither moves nor decodes: an upper bound of {@link #weight()} over the documents from
+     * {@code target} to the end of the block holding it.
+     *
+     * @return the bound, 0 if no document at or after {@code target} remains.
+     */
+    float maxWeight(int target);
+
+    /**
+     * @return the number of documents in the posting list.
+     */
+    int size();
+}
@@ -0,0 +1,28 @@
+package pt.ua.ri.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Read strategy for the posting lists of the final index files.
+ *
+ * @author tiago.novo
+ */
+interface PostingsReader {
+
+    static PostingsReader of(final boolean memoryMapped) {
+        return memoryMapped ? new MappedPostingsReader() : new ChannelPostingsReader();
+    }
+
+    /**
+     * @return a buffer holding exactly the {@code length} bytes starting at {@code offset}. It may be a view over
+     * shared memory, so it must only be read.
+     */
+    ByteBuffer read(Path file, long offset, int length) throws IOException;
+
+    /**
+     * Drops the open files under {@code directory}, so they can be deleted. Later reads open them again.
+     */
+    void release(Path directory);
+}
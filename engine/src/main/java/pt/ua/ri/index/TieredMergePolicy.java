@@ -0,0 +1,64 @@
+package pt.ua.ri.index;
+
+import pt.ua.ri.index.Manifest.SegmentInfo;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Picks the segments to merge so that their number only grows with the logarithm of the index size. Segments are
+ * grouped in tiers by size, each {@code segmentsPerTier} times larger than the one below, and once that many adjacent
+ * segments fall in the same tier they are merged into a single segment of the next one. Only adjacent segments are
+ * merged, so segments keep holding increasing ranges of document ids.
+ *
+ * @author tiago.novo
+ */
+final class TieredMergePolicy {
+
+    static final int SEGMENTS_PER_TIER_DEFAULT = 10;
+    // smaller segments are all in the lowest tier
+    static final long FLOOR_BYTES_DEFAULT = 1L << 20;
+
+    private final int segmentsPerTier;
+    private final long floorBytes;
+
+    TieredMergePolicy() {
+        this(SEGMENTS_PER_TIER_DEFAULT, FLOOR_BYTES_DEFAULT);
+    }
+
+    TieredMergePolicy(final int segmentsPerTier, final long floorBytes) {
+        checkArgument(segmentsPerTier > 1, "Must merge at least two segments");
+        checkArgument(floorBytes > 0, "Floor size must be positive");
+        this.segmentsPerTier = segmentsPerTier;
+        this.floorBytes = floorBytes;
+    }
+
+    /**
+     * @return the first run of {@code segmentsPerTier} adjacent segments of the same tier, empty if there is none.
+     */
+    Optional<List<SegmentInfo>> findMerge(final List<SegmentInfo> segments) {
+        checkNotNull(segments);
+        int start = 0;
+        for (int i = 1; i <= segments.size(); i++) {
+            if (i - start == segmentsPerTier) {
+                return Optional.of(segments.subList(start, i));
+            }
+            if (i < segments.size() && tier(segments.get(i)) != tier(segments.get(start))) {
+                start = i;
+            }
+        }
+        return Optional.empty();
+    }
+
+    private int tier(final SegmentInfo segment) {
+        int tier = 0;
+        for (long limit = floorBytes * segmentsPerTier; segment.getBytes() >= limit && limit > 0;
+             limit *= segmentsPerTier) {
+            tier++;
+        }
+        return tier;
+    }
+}
@@ -16,55 +16,60 @@
  */
 package pt.ua.ri.index.field;
 
-import com.google.common.collect.ImmutableMap;
-import gnu.trove.map.TIntObjectMap;
-import gnu.trove.map.hash.TIntObjectHashMap;
+import com.google.common.collect.ImmutableSet;
 import pt.ua.ri.document.Document;
-import pt.ua.ri.document.DocumentProperties;
 import pt.ua.ri.document.DocumentSchema;
+import pt.ua.ri.index.DocIdBitmap;
 import pt.ua.ri.index.Index;
 import pt.ua.ri.index.IndexTuple;
+import pt.ua.ri.index.PostingsCursor;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.function.BiPredicate;
+import java.util.Set;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
+ * Restricts field searches to a set of fields. Field values are read from the decorated index's document store.
+ *
  * @author Tiago Novo <tmnovo at ua.pt>
  */
 public class FieldIndex<S extends DocumentSchema<S>> implements Index<S> {
 
-    private final static BiPredicate<? extends DocumentProperties, String> ALWAYS_FALSE = (properties, defaultValue) -> false;
-
-
-    private final Map<String, BiPredicate<DocumentProperties<S>, String>> fieldCheckMap;
-    private final TIntObjectMap<DocumentProperties<S>> documentProperties;
+    private final Set<String> fields;
     private final Index<S> decorated;
 
 
-    public FieldIndex(final Index<S> decorated,
-            final Map<String, BiPredicate<DocumentProperties<S>, String>> field_check_map) {
+    /**
+     * @param fields the searchable fields, in upper case like the schema's.
+     */
+    public FieldIndex(final Index<S> decorated, final Set<String> fields) {
         checkNotNull(decorated);
-        this.documentProperties = new TIntObjectHashMap<>();
         this.decorated = decorated;
-        fieldCheckMap = field_check_map;
+        this.fields = ImmutableSet.copyOf(fields);
     }
 
     public FieldIndex(final Index<S> decorated) {
-        this(decorated, ImmutableMap.of());
+        this(decorated, ImmutableSet.of());
     }
 
-    @SuppressWarnings("unchecked") @Override
-    public boolean documentsHasField(final int doc_id, final String field, final String value) {
+    @Override public boolean documentsHasField(final int doc_id, final String field, final String value) {
         checkNotNull(field, "Field must not be null");
         checkNotNull(value, "Value must not be null");
-        final DocumentProperties<S> di = documentProperties.get(doc_id);
+        return fields.contains(field.toUpperCase()) && decorated.documentsHasField(doc_id, field, value);
+    }
 
-        return fieldCheckMap.getOrDefault(field, (BiPredicate<DocumentProperties<S>, String>) ALWAYS_FALSE)
-                .test(di, value);
+    @Override public DocIdBitmap documentsWithField(final String field, final String value) {
+        checkNotNull(field, "Field must not be null");
+        checkNotNull(value, "Value must not be null");
+        return fields.contains(field.toUpperCase()) ? decorated.documentsWithField(field, value) : DocIdBitmap.EMPTY;
+    }
 
+    @Override public DocIdBitmap documentsInRange(final String field, final String from, final String to) {
+        checkNotNull(field, "Field must not be null");
+        return fields.contains(field.toUpperCase()) ? decorated.documentsInRange(field, from, to) : DocIdBitmap.EMPTY;
     }
 
     @Override public void finish() {
@@ -75,15 +80,24 @@ public class FieldIndex<S extends DocumentSchema<S>> implements Index<S> {
         return decorated.get(tokens);
     }
 
+    @Override public Optional<PostingsCursor> getPostings(final String token) {
+        return decorated.getPostings(token);
+    }
+
+    @Override public float getMaxWeight(final String token) {
+        return decorated.getMaxWeight(token);
+    }
+
     @Override public String getDocumentName(final int docId) {
         return decorated.getDocumentName(docId);
     }
 
-    @SuppressWarnings("unchecked") @Override public int index(final Document<S> document) {
-        final int docID = decorated.index(document);
-        documentProperties.put(docID, document.getDocumentProperties());
-        return docID;
+    @Override public long getVersion() {
+        return decorated.getVersion();
+    }
 
+    @Override public int index(final Document<S> document) {
+        return decorated.index(document);
     }
 
     @Override public int numberOfDocuments() {
@@ -94,5 +108,13 @@ public class FieldIndex<S extends DocumentSchema<S>> implements Index<S> {
         return decorated.query(query);
     }
 
+    @Override public Map<String, Optional<PostingsCursor>> queryPostings(final String query) {
+        return decorated.queryPostings(query);
+    }
+
+    @Override public List<String> terms(final String query) {
+        return decorated.terms(query);
+    }
+
 
 }
@@ -21,18 +21,20 @@ import com.google.common.base.Preconditions;
 import gnu.trove.iterator.TIntIterator;
 import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
-import gnu.trove.list.linked.TIntLinkedList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import pt.ua.ri.index.AbstractDocumentInfo;
 import pt.ua.ri.index.DocumentInfo;
+import pt.ua.ri.utils.VariableByte;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.util.Arrays;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import static com.google.common.collect.ImmutableList.toImmutableList;
 
 /**
  * @author mjrp1_000
@@ -43,36 +45,36 @@ public class ProximityDocumentInfo extends AbstractDocumentInfo implements Docum
     private static final String POSITIONS_SUFFIX = "]";
     private static final Logger logger = LoggerFactory.getLogger(ProximityDocumentInfo.class);
 
-    static ProximityDocumentInfo parse(final String str) {
-        final String[] parts = str.split(SEPARATOR, 3);
+    static ProximityDocumentInfo parse(final int docId, final String str) {
+        final String[] parts = str.split(SEPARATOR, 2);
         try {
-            final int docId = Integer.parseInt(parts[0]);
-            final float normalizedDocumentFrequency = DECIMAL_FORMAT.parse(parts[1]).floatValue();
+            final float normalizedDocumentFrequency = DECIMAL_FORMAT.get().parse(parts[0]).floatValue();
             final TIntList positions = TIntArrayList.wrap(Arrays.stream(
-                    parts[2].substring(parts[2].indexOf(POSITIONS_PREFIX), parts[2].indexOf(POSITIONS_SUFFIX))
+                    parts[1].substring(parts[1].indexOf(POSITIONS_PREFIX) + 1, parts[1].indexOf(POSITIONS_SUFFIX))
                             .split(POSITIONS_DELIMITER)).mapToInt((p) -> Integer.parseInt(p, 16)).toArray());
             return new ProximityDocumentInfo(docId, normalizedDocumentFrequency, positions);
-        } catch (ParseException e) {
+        } catch (ParseException | ArrayIndexOutOfBoundsException e) {
             logger.error("Invalid format. {}", str, e);
             return null;
         }
     }
 
-    private final TIntList positions;
-
-    ProximityDocumentInfo(final int docId, final int position) {
-        this(docId);
-        positions.add(position);
+    static ProximityDocumentInfo read(final int docId, final ByteBuffer buffer) {
+        final float normalizedDocumentFrequency = buffer.getFloat();
+        final int[] positions = new int[VariableByte.read(buffer)];
+        int position = 0;
+        for (int i = 0; i < positions.length; i++) {
+            position += VariableByte.read(buffer);
+            positions[i] = position;
+        }
+        return new ProximityDocumentInfo(docId, normalizedDocumentFrequency, TIntArrayList.wrap(positions));
     }
 
-    ProximityDocumentInfo(final int docId) {
-        super(docId);
-        this.positions = new TIntLinkedList();
-    }
+    private final TIntList positions;
 
-    private ProximityDocumentInfo(final int docId, final float normalizedDocumentFrequency, final TIntList positions) {
+    ProximityDocumentInfo(final int docId, final float normalizedDocumentFrequency, final TIntList positions) {
         super(docId, normalizedDocumentFrequency);
-        this.positions = new TIntLinkedList(positions);
+        this.positions = new TIntArrayList(positions);
     }
 
     @Override public int getTermFrequency() {
@@ -81,27 +83,34 @@ public class ProximityDocumentInfo extends AbstractDocumentInfo implements Docum
 
     @Override public DocumentInfo merge(final DocumentInfo documentInfo) {
         Preconditions.checkArgument(documentInfo instanceof ProximityDocumentInfo, "Class must match");
-        this.positions.addAll(((ProximityDocumentInfo) documentInfo).getPositions());
+        this.positions.addAll(((ProximityDocumentInfo) documentInfo).positions);
         return this;
     }
 
+    @Override protected void writePayload(final DataOutput out) throws IOException {
+        VariableByte.write(out, positions.size());
+        final TIntIterator iterator = positions.iterator();
+        int previous = 0;
+        while (iterator.hasNext()) {
+            final int position = iterator.next();
+            VariableByte.write(out, position - previous);
+            previous = position;
+        }
+    }
+
     @Override public String toString() {
         return positionsStream().mapToObj(Integer::toHexString)
                 .collect(
                         Collectors.joining(POSITIONS_DELIMITER, super.toString() + POSITIONS_PREFIX, POSITIONS_SUFFIX));
     }
 
-    Iterable<Integer> boxed() {
-        return positionsStream().boxed().collect(toImmutableList());
-    }
-
-    IntStream positionsStream() {
+    private IntStream positionsStream() {
         final TIntIterator iterator = positions.iterator();
         return IntStream.generate(iterator::next).limit(positions.size());
     }
 
-    private TIntList getPositions() {
-        return positions;
+    @Override protected int[] getPositions() {
+        return positions.toArray();
     }
 
 
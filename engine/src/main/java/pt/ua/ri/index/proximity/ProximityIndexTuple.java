@@ -20,9 +20,9 @@ package pt.ua.ri.index.proximity;
 import pt.ua.ri.index.AbstractIndexTuple;
 import pt.ua.ri.index.DocumentInfo;
 import pt.ua.ri.index.IndexTuple;
+import pt.ua.ri.index.PostingsCursor;
 
-import static com.google.common.collect.ImmutableList.copyOf;
-import static com.google.common.collect.ImmutableList.of;
+import java.nio.ByteBuffer;
 
 /**
  * @author mjrp1_000
@@ -33,6 +33,14 @@ public class ProximityIndexTuple extends AbstractIndexTuple implements IndexTupl
         return decode(line, ProximityIndexTuple::new, ProximityDocumentInfo::parse);
     }
 
+    static IndexTuple read(final String term, final ByteBuffer buffer) {
+        return read(term, buffer, ProximityIndexTuple::new, ProximityDocumentInfo::read);
+    }
+
+    static PostingsCursor readPostings(final ByteBuffer buffer) {
+        return readPostings(buffer, ProximityDocumentInfo::read);
+    }
+
     ProximityIndexTuple(final String term, final int docId, final ProximityDocumentInfo documentInfo) {
         super(term, docId, documentInfo);
     }
@@ -41,11 +49,6 @@ public class ProximityIndexTuple extends AbstractIndexTuple implements IndexTupl
         super(term);
     }
 
-    public Iterable<Integer> getDocumentPositions(final int doc_id) {
-        final ProximityDocumentInfo di = (ProximityDocumentInfo) docs.get(doc_id);
-        return (di != null) ? copyOf(di.boxed()) : of();
-    }
-
     @Override protected boolean typeCheck(final DocumentInfo di) {
         return di != null && di instanceof ProximityDocumentInfo;
     }
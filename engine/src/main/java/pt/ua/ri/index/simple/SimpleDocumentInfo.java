@@ -22,7 +22,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import pt.ua.ri.index.AbstractDocumentInfo;
 import pt.ua.ri.index.DocumentInfo;
+import pt.ua.ri.utils.VariableByte;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 
 /**
@@ -31,27 +35,27 @@ import java.text.ParseException;
 public class SimpleDocumentInfo extends AbstractDocumentInfo implements DocumentInfo {
     private static final Logger logger = LoggerFactory.getLogger(SimpleDocumentInfo.class);
 
-    static SimpleDocumentInfo parse(final String str) {
-        final String[] parts = str.split(SEPARATOR, 3);
+    static SimpleDocumentInfo parse(final int docId, final String str) {
+        final String[] parts = str.split(SEPARATOR, 2);
         try {
-            final int docId = Integer.parseInt(parts[0]);
-            final float normalizedDocumentFrequency = DECIMAL_FORMAT.parse(parts[1]).floatValue();
-            final int nTerms = Integer.parseInt(parts[2], 16);
+            final float normalizedDocumentFrequency = DECIMAL_FORMAT.get().parse(parts[0]).floatValue();
+            final int nTerms = Integer.parseInt(parts[1]);
             return new SimpleDocumentInfo(docId, nTerms, normalizedDocumentFrequency);
-        } catch (ParseException e) {
-            logger.error("Invalid format. {} does not match {}.", parts[1], DECIMAL_FORMAT, e);
+        } catch (ParseException | ArrayIndexOutOfBoundsException e) {
+            logger.error("Invalid format. {} does not match {}.", str, DECIMAL_FORMAT.get().toPattern(), e);
             return null;
         }
     }
 
-    private int termFrequency;
-
-    SimpleDocumentInfo(final int docId) {
-        super(docId);
-        termFrequency = 1;
+    static SimpleDocumentInfo read(final int docId, final ByteBuffer buffer) {
+        final float normalizedDocumentFrequency = buffer.getFloat();
+        final int nTerms = VariableByte.read(buffer);
+        return new SimpleDocumentInfo(docId, nTerms, normalizedDocumentFrequency);
     }
 
-    private SimpleDocumentInfo(final int docId, final int nTerms, final float normalizedTermFrequency) {
+    private int termFrequency;
+
+    SimpleDocumentInfo(final int docId, final int nTerms, final float normalizedTermFrequency) {
         super(docId, normalizedTermFrequency);
         Preconditions.checkArgument(nTerms > 0, "Must be positive");
         this.termFrequency = nTerms;
@@ -67,6 +71,10 @@ public class SimpleDocumentInfo extends AbstractDocumentInfo implements Document
         return this;
     }
 
+    @Override protected void writePayload(final DataOutput out) throws IOException {
+        VariableByte.write(out, termFrequency);
+    }
+
     @Override public String toString() {
         return super.toString() + Integer.toString(termFrequency);
     }
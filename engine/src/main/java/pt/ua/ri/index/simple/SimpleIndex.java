@@ -16,17 +16,19 @@
  */
 package pt.ua.ri.index.simple;
 
-import com.google.common.base.Converter;
 import com.google.common.base.Preconditions;
-import pt.ua.ri.document.DocumentProperties;
+import pt.ua.ri.config.Configuration;
 import pt.ua.ri.document.DocumentSchema;
 import pt.ua.ri.index.AbstractIndex;
 import pt.ua.ri.index.DocumentInfo;
 import pt.ua.ri.index.Index;
 import pt.ua.ri.index.IndexTuple;
+import pt.ua.ri.index.PostingFormat;
+import pt.ua.ri.index.PostingsCursor;
 import pt.ua.ri.tokenizer.StreamTokenizer;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 
 /**
@@ -36,16 +38,40 @@ public class SimpleIndex<S extends DocumentSchema<S>> extends AbstractIndex<S> i
 
     public SimpleIndex(final Path dir,
             final StreamTokenizer st,
-            final Converter<String, DocumentProperties<S>> converter) throws IOException {
-        super(dir, st, converter);
+            final S schema) throws IOException {
+        super(dir, st, schema);
+    }
+
+    public SimpleIndex(final Path dir,
+            final StreamTokenizer st,
+            final S schema,
+            final PostingFormat postingFormat) throws IOException {
+        super(dir, st, schema, postingFormat);
+    }
+
+    public SimpleIndex(final Configuration<S> conf, final StreamTokenizer st) throws IOException {
+        super(conf, st);
     }
 
     @Override protected IndexTuple decodeIndexTuple(final String line) {
         return SimpleIndexTuple.decode(line);
     }
 
-    @Override protected DocumentInfo newDocumentInfo(final int docId, final int position) {
-        return new SimpleDocumentInfo(docId);
+    @Override protected IndexTuple readIndexTuple(final String term, final ByteBuffer buffer) {
+        return SimpleIndexTuple.read(term, buffer);
+    }
+
+    @Override protected PostingsCursor readPostings(final ByteBuffer buffer) {
+        return SimpleIndexTuple.readPostings(buffer);
+    }
+
+    @Override protected DocumentInfo newDocumentInfo(final int docId, final float normalizedDocumentFrequency,
+            final int termFrequency, final int[] positions) {
+        return new SimpleDocumentInfo(docId, termFrequency, normalizedDocumentFrequency);
+    }
+
+    @Override protected boolean storesPositions() {
+        return false;
     }
 
     @Override protected IndexTuple newIndexTuple(final String term, final int docId, final DocumentInfo documentInfo) {
@@ -20,6 +20,9 @@ package pt.ua.ri.index.simple;
 import pt.ua.ri.index.AbstractIndexTuple;
 import pt.ua.ri.index.DocumentInfo;
 import pt.ua.ri.index.IndexTuple;
+import pt.ua.ri.index.PostingsCursor;
+
+import java.nio.ByteBuffer;
 
 /**
  * @author mjrp1_000
@@ -30,6 +33,14 @@ class SimpleIndexTuple extends AbstractIndexTuple implements IndexTuple {
         return decode(line, SimpleIndexTuple::new, SimpleDocumentInfo::parse);
     }
 
+    static IndexTuple read(final String term, final ByteBuffer buffer) {
+        return read(term, buffer, SimpleIndexTuple::new, SimpleDocumentInfo::read);
+    }
+
+    static PostingsCursor readPostings(final ByteBuffer buffer) {
+        return readPostings(buffer, SimpleDocumentInfo::read);
+    }
+
     SimpleIndexTuple(String term, final int docId, final SimpleDocumentInfo documentInfo) {
         super(term, docId, documentInfo);
     }
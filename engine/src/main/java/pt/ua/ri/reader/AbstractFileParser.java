@@ -16,6 +16,7 @@ import java.nio.file.Path;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.stream.Stream;
 
 /**
  * @author tiago.novo
@@ -24,6 +25,7 @@ public abstract class AbstractFileParser<S extends DocumentSchema<S>> implements
     private final static Logger logger = LoggerFactory.getLogger(AbstractFileParser.class);
     protected final Map<String, Serializable> properties;
     protected final PeekingIterator<String> lines;
+    private final Stream<String> lineStream;
     private final S schema;
     protected volatile Document<S> nextDocument;
 
@@ -31,7 +33,8 @@ public abstract class AbstractFileParser<S extends DocumentSchema<S>> implements
         Preconditions.checkNotNull(path, "Path cannot be null");
         Preconditions.checkNotNull(schema);
         this.properties = new LinkedHashMap<>(schema.size());
-        this.lines = Iterators.peekingIterator(Files.lines(path, StandardCharsets.UTF_8).iterator());
+        this.lineStream = Files.lines(path, StandardCharsets.UTF_8);
+        this.lines = Iterators.peekingIterator(lineStream.iterator());
         this.schema = schema;
     }
 
@@ -46,11 +49,24 @@ public abstract class AbstractFileParser<S extends DocumentSchema<S>> implements
             throw new NoSuchElementException();
         }
         final Document<S> doc = nextDocument;
-        logger.debug("Document:\"{}\" has {} lines.", doc, doc.stream().count());
-        fetchNextDocument();
+        if (logger.isTraceEnabled()) {
+            logger.trace("Document:\"{}\" has {} lines.", doc, doc.stream().count());
+        }
+        advance();
         return doc;
     }
 
+    /**
+     * Fetches the next document, releasing the file as soon as it is fully read. Subclasses call it once constructed
+     * to fetch the first document, so a file without any is released too.
+     */
+    protected final void advance() {
+        fetchNextDocument();
+        if (nextDocument == null) {
+            lineStream.close();
+        }
+    }
+
     protected S getSchema() {
         return schema;
     }
@@ -7,12 +7,14 @@ import pt.ua.ri.document.DocumentSchema;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
 import static java.nio.file.Files.walk;
 import static java.util.Spliterator.*;
 import static java.util.Spliterators.spliteratorUnknownSize;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.StreamSupport.stream;
 
 
@@ -28,9 +30,32 @@ public class CorpusAdapter<S extends DocumentSchema<S>> {
 
     private CorpusAdapter(final Function<Path, FileParser<S>> parserCreator) {this.parserCreator = parserCreator;}
 
-    public Stream<Document> streamCorpus(Path p) throws IOException {
+    /**
+     * Reads the corpus files one after the other, in file name order.
+     */
+    public Stream<Document<S>> streamCorpus(Path p) throws IOException {
+        return listFiles(p).stream().flatMap(this::streamFile);
+    }
+
+    /**
+     * Parses up to {@code threads} corpus files at a time, keeping at most {@code prefetch} parsed files ahead of the
+     * consumer. Documents are returned in the same order as {@link #streamCorpus(Path)}, so a single indexing thread
+     * assigns the same document ids either way. Closing the stream stops the readers.
+     */
+    public Stream<Document<S>> streamCorpus(Path p, int threads, int prefetch) throws IOException {
+        if (threads == 1 && prefetch == 1) {
+            return streamCorpus(p);
+        }
+        final PrefetchingCorpusReader<S> reader = new PrefetchingCorpusReader<>(listFiles(p), parserCreator, threads,
+                prefetch);
+        return stream(spliteratorUnknownSize(reader, NONNULL | ORDERED), false).onClose(reader::close);
+    }
+
+    private List<Path> listFiles(Path p) throws IOException {
         Preconditions.checkNotNull(p, "Directory cannot be null");
-        return walk(p, 1).filter(Files::isRegularFile).flatMap(this::streamFile);
+        try (Stream<Path> files = walk(p, 1)) {
+            return files.filter(Files::isRegularFile).sorted().collect(toList());
+        }
     }
 
     private FileParser<S> createFileParser(final Path path) {
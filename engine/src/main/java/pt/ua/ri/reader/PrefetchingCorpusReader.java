@@ -0,0 +1,116 @@
+package pt.ua.ri.reader;
+
+import com.google.common.collect.ImmutableList;
+import pt.ua.ri.document.Document;
+import pt.ua.ri.document.DocumentSchema;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Parses corpus files on a pool of reader threads while the caller consumes the documents. At most {@code prefetch}
+ * files are parsed or waiting to be consumed at any time, so a slow consumer holds back the readers instead of
+ * filling the heap. Documents come out in file order and, within a file, in parsing order, whatever the number of
+ * threads.
+ *
+ * @author tiago.novo
+ */
+final class PrefetchingCorpusReader<S extends DocumentSchema<S>> implements Iterator<Document<S>>, Closeable {
+
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger(0);
+
+    private final Iterator<Path> files;
+    private final Function<Path, FileParser<S>> parserCreator;
+    private final ExecutorService executor;
+    private final Queue<Future<List<Document<S>>>> parsing;
+    private final int prefetch;
+    private Iterator<Document<S>> current;
+
+    PrefetchingCorpusReader(final List<Path> files, final Function<Path, FileParser<S>> parserCreator,
+            final int threads, final int prefetch) {
+        checkNotNull(files);
+        checkNotNull(parserCreator);
+        checkArgument(threads > 0, "Must use at least one thread");
+        checkArgument(prefetch >= threads, "Must prefetch at least one file per thread");
+        this.files = files.iterator();
+        this.parserCreator = parserCreator;
+        this.prefetch = prefetch;
+        this.parsing = new ArrayDeque<>(prefetch);
+        this.current = Collections.emptyIterator();
+        final int pool = POOL_COUNT.getAndIncrement();
+        final AtomicInteger count = new AtomicInteger(0);
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "reader-" + pool + '-' + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        fill();
+    }
+
+    @Override public boolean hasNext() {
+        while (!current.hasNext()) {
+            final Future<List<Document<S>>> next = parsing.poll();
+            if (next == null) {
+                executor.shutdown();
+                return false;
+            }
+            // a file was consumed, so there is room to read another one
+            fill();
+            current = await(next).iterator();
+        }
+        return true;
+    }
+
+    @Override public Document<S> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override public void close() {
+        executor.shutdownNow();
+        parsing.clear();
+        current = Collections.emptyIterator();
+    }
+
+    private void fill() {
+        while (parsing.size() < prefetch && files.hasNext()) {
+            final Path file = files.next();
+            parsing.add(executor.submit(() -> ImmutableList.copyOf(parserCreator.apply(file))));
+        }
+    }
+
+    private List<Document<S>> await(final Future<List<Document<S>>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading the corpus", e);
+        } catch (ExecutionException e) {
+            close();
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw (UncheckedIOException) e.getCause();
+            }
+            throw new UncheckedIOException(new IOException("Error parsing corpus file", e.getCause()));
+        }
+    }
+}
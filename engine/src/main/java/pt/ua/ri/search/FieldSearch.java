@@ -18,7 +18,9 @@
 package pt.ua.ri.search;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
 import pt.ua.ri.document.DocumentSchema;
+import pt.ua.ri.index.DocIdBitmap;
 import pt.ua.ri.index.Index;
 import pt.ua.ri.search.results.Result;
 import pt.ua.ri.tokenizer.Tokenizer;
@@ -34,56 +36,132 @@ import java.util.regex.Pattern;
 public class FieldSearch<S extends DocumentSchema<S>> extends ProximitySearch<S> {
 
     private final Pattern queryPattern = Pattern.compile(
-            "((?:[a-zA-Z]+:[a-zA-Z0-9-]+)|(?:\"(?:[a-z A-Z]+)\"(?:~(?:[0-9]+))?)|(?:[a-zA-Z]+))");
+            "((?:[a-zA-Z_]+:\\[[0-9*-]+ +TO +[0-9*-]+\\])|(?:[a-zA-Z_]+:[a-zA-Z0-9-]+)|" +
+            "(?:\"(?:[a-z A-Z]+)\"(?:~(?:[0-9]+))?)|(?:[a-zA-Z]+))");
+    private static final Pattern RANGE_PATTERN = Pattern.compile(
+            "(?<field>[a-zA-Z_]+):\\[(?<from>[0-9*-]+) +TO +(?<to>[0-9*-]+)\\]");
+    private static final Pattern PHRASE_PATTERN = Pattern.compile("\"(?<query>[a-z A-Z]+)\"(~(?<dist>[0-9]+))?");
+
+    private final ResultCache cache;
 
     public FieldSearch(Index<S> index, Tokenizer tok) {
+        this(index, tok, null);
+    }
+
+    /**
+     * @param cache rankings of recent queries, {@code null} to always search.
+     */
+    public FieldSearch(Index<S> index, Tokenizer tok, ResultCache cache) {
         super(index, tok);
+        this.cache = cache;
     }
 
     public FieldSearch(final Index<S> idx) {
         super(idx);
+        this.cache = null;
     }
 
-    @Override public Iterable<Result> search(String query) {
+    @Override public Iterable<Result> search(String query, int k) {
         List<Field> fields = new ArrayList<>();
-        List<Result> results = new ArrayList<>();
-        List<Result> finalResults = new ArrayList<>();
+        List<String> groups = new ArrayList<>();
 
         Matcher m = queryPattern.matcher(query);
         while (m.find()) {
             String group = m.group();
 
-            if (group.contains(":")) {
+            Matcher range = RANGE_PATTERN.matcher(group);
+            if (range.matches()) {
+                fields.add(new Range(range.group("field"), range.group("from"), range.group("to")));
+            } else if (group.contains(":")) {
                 String[] split = group.split(":");
                 fields.add(new Field(split[0], split[1]));
             } else {
-                results.addAll(ImmutableList.copyOf(super.search(group)));
+                groups.add(group);
             }
         }
 
-        boolean hasfield;
-        for (Result r : results) {
-            hasfield = true;
-            for (Field f : fields) {
-                if (!index.documentsHasField(r.getDocId(), f.field, f.value)) {
-                    hasfield = false;
-                    break;
+        if (cache == null) {
+            return search(groups, fields, k);
+        }
+        return cache.get(cacheKey(groups, fields), k, index.getVersion(), () -> search(groups, fields, k));
+    }
+
+    /**
+     * Queries that only differ in case, spacing, the order of their field constraints or in words that normalize to
+     * the same terms (or to none, like stopwords) share the same key.
+     */
+    private List<String> cacheKey(final List<String> groups, final List<Field> fields) {
+        final List<String> key = new ArrayList<>(groups.size() + fields.size());
+        for (final String group : groups) {
+            final Matcher phrase = PHRASE_PATTERN.matcher(group);
+            if (phrase.matches()) {
+                final int dist = phrase.group("dist") != null ?
+                                 Integer.parseInt(phrase.group("dist")) :
+                                 DEFAULT_DISTANCE;
+                key.add('"' + String.join(" ", phrase.group("query").toLowerCase().trim().split(" +")) + "\"~" + dist);
+            } else {
+                final List<String> terms = index.terms(group);
+                if (!terms.isEmpty()) {
+                    key.add(String.join(" ", terms));
                 }
             }
-            if (hasfield) {
-                finalResults.add(r);
-            }
+        }
+        fields.stream().map(Field::key).sorted().forEach(key::add);
+        return key;
+    }
+
+    private Iterable<Result> search(final List<String> groups, final List<Field> fields, final int k) {
+        // field constraints become a single filter, so groups only score the documents that satisfy them all
+        DocIdBitmap filter = null;
+        for (Field f : fields) {
+            final DocIdBitmap documents = f.documents(index);
+            filter = filter == null ? documents : filter.and(documents);
+        }
+        if (filter != null && filter.isEmpty()) {
+            return ImmutableList.of();
         }
 
-        return finalResults;
+        List<Result> results = new ArrayList<>();
+        for (String group : groups) {
+            results.addAll(ImmutableList.copyOf(super.search(group, k, filter)));
+        }
+        return Ordering.natural().leastOf(results, k);
     }
 
-    private class Field {
+    private static class Field {
         final String field, value;
 
         Field(String field, String value) {
             this.field = field;
             this.value = value;
         }
+
+        DocIdBitmap documents(final Index<?> index) {
+            return index.documentsWithField(field, value);
+        }
+
+        /**
+         * @return the constraint as the index matches it, field names and values being case insensitive.
+         */
+        String key() {
+            return field.toUpperCase() + ':' + value.toLowerCase();
+        }
+    }
+
+    /**
+     * {@code field:[from TO to]}, bounds included and {@code *} for an open one.
+     */
+    private static class Range extends Field {
+        final String from, to;
+
+        Range(String field, String from, String to) {
+            super(field, '[' + from + " TO " + to + ']');
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override DocIdBitmap documents(final Index<?> index) {
+            return index.documentsInRange(field, from, to);
+        }
     }
 }
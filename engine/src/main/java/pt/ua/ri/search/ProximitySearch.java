@@ -16,29 +16,33 @@
  */
 package pt.ua.ri.search;
 
-import com.google.common.util.concurrent.AtomicDouble;
-import gnu.trove.map.TIntFloatMap;
-import gnu.trove.map.hash.TIntFloatHashMap;
-import gnu.trove.map.hash.TObjectFloatHashMap;
-import org.apache.commons.collections4.CollectionUtils;
+import com.google.common.collect.ImmutableList;
 import pt.ua.ri.document.DocumentSchema;
+import pt.ua.ri.index.DocIdBitmap;
 import pt.ua.ri.index.Index;
-import pt.ua.ri.index.IndexTuple;
-import pt.ua.ri.index.proximity.ProximityIndexTuple;
+import pt.ua.ri.index.PostingsCursor;
 import pt.ua.ri.search.results.Result;
-import pt.ua.ri.search.results.SimpleResult;
 import pt.ua.ri.tokenizer.Tokenizer;
 
-import java.util.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-/*
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Comparator.comparingInt;
+import static pt.ua.ri.index.PostingsCursor.NO_MORE_DOCS;
 
- 
+/**
+ * Phrase and proximity queries, {@code "w1 w2 ... wn"~d}. A document matches when it contains every term and each
+ * term occurs at most {@code d} positions away, in either direction, from an occurrence of the previous one; {@code d}
+ * defaults to 1, an exact phrase up to word order. Matches are scored by the cosine of the terms, like
+ * {@link SimpleSearch}.
  */
 public class ProximitySearch<S extends DocumentSchema<S>> extends SimpleSearch<S> {
 
+    static final int DEFAULT_DISTANCE = 1;
     private final Pattern queryPattern = Pattern.compile("\"(?<query>[a-z A-Z]+)\"(~(?<dist>[0-9]+))?");
 
     ProximitySearch(final Index<S> idx) {
@@ -50,133 +54,118 @@ public class ProximitySearch<S extends DocumentSchema<S>> extends SimpleSearch<S
         super(index, tok);
     }
 
-    @Override public Iterable<Result> search(String query) {
-
-
-        String nquery = null;
-        int dist = 1;
+    @Override Iterable<Result> search(final String query, final int k, final DocIdBitmap filter) {
+        checkArgument(k > 0, "k must be positive");
+        final Matcher m = queryPattern.matcher(query);
+        if (!m.matches()) {
+            return super.search(query, k, filter);
+        }
+        final int distance = m.group("dist") != null ? Integer.parseInt(m.group("dist")) : DEFAULT_DISTANCE;
 
+        // normalized like the indexed text, without adding the words to the index's dictionary
+        final List<String> words = index.terms(m.group("query"));
 
-        Matcher m = queryPattern.matcher(query);
-        if (m.matches()) {
-            nquery = m.group("query");
-            try {
-                dist = Integer.parseInt(m.group("dist"));
-            } catch (NumberFormatException ex) {
-                dist = 1;
-            }
+        final int n = words.size();
+        if (n == 0) {
+            return ImmutableList.of();
         }
-
-        if (nquery == null) {
-            return super.search(query);
+        final PostingsCursor[] cursors = new PostingsCursor[n];
+        final double[] queryWeights = new double[n];
+        final double logDocumentFrequency = Math.log(index.numberOfDocuments());
+        double queryLength = 0.0;
+        for (int i = 0; i < n; i++) {
+            final Optional<PostingsCursor> postings = index.getPostings(words.get(i));
+            if (!postings.isPresent()) {
+                // every term has to occur
+                return ImmutableList.of();
+            }
+            cursors[i] = postings.get();
+            queryWeights[i] = logDocumentFrequency - Math.log(cursors[i].size());
+            queryLength += queryWeights[i] * queryWeights[i];
         }
-
-        List<Result> ret = new ArrayList<>();
-        Map<String, IndexTuple> tokenInfos = new HashMap<>();
-        TObjectFloatHashMap<String> palavrasNLize = new TObjectFloatHashMap<>();
-        TIntFloatMap docsnLize = new TIntFloatHashMap();
-        tok.setText(query);
-
-        List<String> palavras = new ArrayList<>();
-        while (tok.hasNext()) {
-            palavras.add(tok.next().getString());
+        final double factor = queryLength > 0 ? 1.0 / Math.sqrt(queryLength) : 0.0;
+
+        // intersect starting from the rarest term, positions are still checked in query order
+        final PostingsCursor[] bySize = cursors.clone();
+        Arrays.sort(bySize, comparingInt(PostingsCursor::size));
+
+        final TopKCollector collector = new TopKCollector(k);
+        for (int docId = nextCommonDocument(bySize, 0, filter); docId != NO_MORE_DOCS;
+             docId = nextCommonDocument(bySize, docId + 1, filter)) {
+            if (isWithinDistance(cursors, distance)) {
+                double score = 0.0;
+                for (int i = 0; i < n; i++) {
+                    score += queryWeights[i] * factor * cursors[i].weight();
+                }
+                collector.collect(docId, score);
+            }
         }
+        return collector.results();
+    }
 
-        final AtomicDouble queryLength = new AtomicDouble(0.0);
-
-        for (String palavra : palavras) {
-            index.get(palavra).ifPresent(postingList -> {
-                tokenInfos.put(palavra, postingList);
-                int df = postingList.getDocumentFrequency();
-                float idf = (float) (Math.log(index.numberOfDocuments()) - Math.log(df));
-                queryLength.addAndGet(idf * idf);
-                palavrasNLize.put(palavra, idf);
-            });
+    /**
+     * @return the first document with id greater than or equal to {@code target} in all cursors and in
+     * {@code filter}, unless it is {@code null}.
+     */
+    private static int nextCommonDocument(final PostingsCursor[] cursors, final int target, final DocIdBitmap filter) {
+        int docId = nextCommonDocument(cursors, target);
+        while (filter != null && docId != NO_MORE_DOCS && !filter.contains(docId)) {
+            docId = nextCommonDocument(cursors, filter.next(docId));
         }
+        return docId;
+    }
 
-        queryLength.set(Math.sqrt(queryLength.doubleValue()));
-        palavrasNLize.transformValues(new TransformationFunction(queryLength.floatValue()));
-        Iterator<String> it = palavras.iterator();
-
-
-        // for each two words
-        if (it.hasNext()) {
-            String p_actual;
-            String p_next = it.next();
-            ProximityIndexTuple t_ac;
-            ProximityIndexTuple t_nx = (ProximityIndexTuple) tokenInfos.get(p_next);
-            while (it.hasNext()) {
-                p_actual = p_next;
-                p_next = it.next();
-                t_ac = t_nx;
-                t_nx = (ProximityIndexTuple) tokenInfos.get(p_next);
-                // get all documents from both words
-                // see documents in common
-
-                Collection<Integer> isect = CollectionUtils.intersection(t_ac.getDocumentsID(), t_nx.getDocumentsID());
-
-                // for each document get positions of words
-
-                for (int doc_id : isect) {
-                    Iterable<Integer> lp_ac = t_ac.getDocumentPositions(doc_id);
-                    Iterable<Integer> lp_nx = t_nx.getDocumentPositions(doc_id);
-
-                    Iterator<Integer> it_ac = lp_ac.iterator();
-                    Iterator<Integer> it_nx = lp_nx.iterator();
-
-                    if (!it_ac.hasNext() || !it_nx.hasNext()) {
-                        break;
-                    }
-
-                    int pos_ac = it_ac.next(), pos_nx = it_nx.next();
-                    float score = docsnLize.containsKey(doc_id) ? docsnLize.get(doc_id) : 0;
-
-                    score += comparePos(pos_ac, pos_nx, dist, doc_id, palavrasNLize, p_actual, p_next, t_ac, t_nx);
-
-                    while (score <= 0.0f && (it_ac.hasNext() || it_nx.hasNext())) {
-                        if (pos_ac < pos_nx) {
-                            if (it_ac.hasNext()) {
-                                pos_ac = it_ac.next();
-                            } else {
-                                pos_nx = it_nx.next();
-                            }
-                        } else {
-                            if (it_nx.hasNext()) {
-                                pos_nx = it_nx.next();
-                            } else {
-                                pos_ac = it_ac.next();
-                            }
-                        }
-
-                        score += comparePos(pos_ac, pos_nx, dist, doc_id, palavrasNLize, p_actual, p_next, t_ac, t_nx);
-                    }
-                    if (score > 0.0f) {
-                        docsnLize.put(doc_id, score);
-                    }
-                }
+    /**
+     * Leapfrog intersection: every cursor gallops to the candidate of the one before it until they all agree.
+     *
+     * @return the first document with id greater than or equal to {@code target} in all cursors.
+     */
+    private static int nextCommonDocument(final PostingsCursor[] cursors, final int target) {
+        int docId = cursors[0].advance(target);
+        int agreeing = 1;
+        int i = 1;
+        while (docId != NO_MORE_DOCS && agreeing < cursors.length) {
+            final int found = cursors[i].advance(docId);
+            if (found == docId) {
+                agreeing++;
+            } else {
+                docId = found;
+                agreeing = 1;
             }
+            i = (i + 1) % cursors.length;
         }
+        return docId;
+    }
 
-        docsnLize.forEachEntry((int doc_id, float score) -> ret.add(new SimpleResult(doc_id, score)));
-        Collections.sort(ret);
-        return ret;
+    private static boolean isWithinDistance(final PostingsCursor[] cursors, final int distance) {
+        int[] reachable = cursors[0].positions();
+        for (int i = 1; i < cursors.length && reachable.length > 0; i++) {
+            reachable = near(reachable, cursors[i].positions(), distance);
+        }
+        return reachable.length > 0;
     }
 
-    private double comparePos(int pos1,
-            int pos2,
-            int dist,
-            int doc_id,
-            TObjectFloatHashMap<String> palavrasNLize,
-            String palavra1,
-            String palavra2,
-            IndexTuple t1,
-            IndexTuple t2) {
-        if (Math.abs(pos1 - pos2) <= dist) {
-            return (palavrasNLize.get(palavra1) * (t1.getNormalizedDocumentFrequency(doc_id))) +
-                   (palavrasNLize.get(palavra2) * (t2.getNormalizedDocumentFrequency(doc_id)));
-
-        } else {
-            return 0.0f;
+    /**
+     * Linear merge of two sorted position arrays.
+     *
+     * @return the positions of {@code next} that are at most {@code distance} away from a position of
+     * {@code previous}.
+     */
+    private static int[] near(final int[] previous, final int[] next, final int distance) {
+        final int[] result = new int[next.length];
+        int size = 0;
+        int j = 0;
+        for (final int position : next) {
+            while (j < previous.length && previous[j] < position - distance) {
+                j++;
+            }
+            if (j == previous.length) {
+                break;
+            }
+            if (previous[j] <= position + distance) {
+                result[size++] = position;
+            }
         }
+        return Arrays.copyOf(result, size);
     }
 }
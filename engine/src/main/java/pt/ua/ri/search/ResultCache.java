@@ -0,0 +1,146 @@
+package pt.ua.ri.search;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import pt.ua.ri.search.results.Result;
+import pt.ua.ri.search.results.SimpleResult;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Rankings of recently searched queries, kept as parallel (document id, score) arrays. Entries expire after a fixed
+ * time, the whole cache is bounded by the estimated bytes of the rankings and it is emptied whenever the index version
+ * changes. Thread safe.
+ *
+ * @author tiago.novo
+ */
+public class ResultCache {
+
+    // cache entry, key and array headers
+    private static final int ENTRY_BYTES = 128;
+    // string header and its char array
+    private static final int STRING_BYTES = 48;
+
+    private final Cache<Key, Ranking> cache;
+    private long version;
+
+    /**
+     * @param maximumBytes bytes the cached rankings may take.
+     * @param timeToLive   how long a ranking is kept after it is computed.
+     */
+    public ResultCache(final long maximumBytes, final long timeToLive, final TimeUnit unit) {
+        checkArgument(maximumBytes > 0, "Cache must not be empty");
+        checkArgument(timeToLive > 0, "Time to live must be positive");
+        checkNotNull(unit);
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher((Key key, Ranking ranking) -> ranking.weight(key))
+                .expireAfterWrite(timeToLive, unit)
+                .recordStats()
+                .build();
+        this.version = Long.MIN_VALUE;
+    }
+
+    /**
+     * @param key          the normalized query, as {@link FieldSearch} sees it.
+     * @param k            number of results asked for.
+     * @param indexVersion version of the index the results come from.
+     * @param search       computes the ranking when it is not cached.
+     */
+    List<Result> get(final List<String> key, final int k, final long indexVersion,
+            final Supplier<Iterable<Result>> search) {
+        checkNotNull(key);
+        checkNotNull(search);
+        synchronized (this) {
+            if (version != indexVersion) {
+                cache.invalidateAll();
+                version = indexVersion;
+            }
+        }
+        final Key cacheKey = new Key(key, k);
+        final Ranking cached = cache.getIfPresent(cacheKey);
+        if (cached != null) {
+            return cached.results();
+        }
+        final List<Result> results = ImmutableList.copyOf(search.get());
+        synchronized (this) {
+            // rankings computed against an older index are not kept
+            if (version == indexVersion) {
+                cache.put(cacheKey, new Ranking(results));
+            }
+        }
+        return results;
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static final class Key {
+        private final List<String> query;
+        private final int k;
+        private final int hash;
+
+        private Key(final List<String> query, final int k) {
+            this.query = ImmutableList.copyOf(query);
+            this.k = k;
+            this.hash = 31 * this.query.hashCode() + k;
+        }
+
+        @Override public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return k == other.k && query.equals(other.query);
+        }
+
+        @Override public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Ranking {
+        private final int[] docIds;
+        private final double[] scores;
+
+        private Ranking(final List<Result> results) {
+            this.docIds = new int[results.size()];
+            this.scores = new double[results.size()];
+            for (int i = 0; i < docIds.length; i++) {
+                docIds[i] = results.get(i).getDocId();
+                scores[i] = results.get(i).getScore();
+            }
+        }
+
+        private List<Result> results() {
+            final ImmutableList.Builder<Result> results = ImmutableList.builder();
+            for (int i = 0; i < docIds.length; i++) {
+                results.add(new SimpleResult(docIds[i], scores[i]));
+            }
+            return results.build();
+        }
+
+        private int weight(final Key key) {
+            int bytes = ENTRY_BYTES + (Integer.BYTES + Double.BYTES) * docIds.length;
+            for (final String part : key.query) {
+                bytes += STRING_BYTES + 2 * part.length();
+            }
+            return bytes;
+        }
+    }
+}
@@ -25,7 +25,14 @@ import pt.ua.ri.search.results.Result;
  */
 public interface Search<S extends DocumentSchema<S>> {
 
-    Iterable<Result> search(String query);
+    default Iterable<Result> search(String query) {
+        return search(query, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the {@code k} best results for {@code query}, best first.
+     */
+    Iterable<Result> search(String query, int k);
 
     class TransformationFunction implements TFloatFunction {
 
@@ -0,0 +1,98 @@
+package pt.ua.ri.search;
+
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pt.ua.ri.document.DocumentSchema;
+import pt.ua.ri.search.results.Result;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Runs queries on a fixed pool of threads against a single shared, finished index. Results are handed back as
+ * futures, so a batch of queries is answered as fast as the pool allows and callers may consume each result as soon as
+ * it completes.
+ *
+ * @author tiago.novo
+ */
+public class SearchExecutor<S extends DocumentSchema<S>> implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchExecutor.class);
+
+    private final Search<S> searcher;
+    private final ExecutorService executor;
+
+    public SearchExecutor(final Search<S> searcher, final int threads) {
+        checkNotNull(searcher);
+        checkArgument(threads > 0, "Must use at least one thread");
+        this.searcher = searcher;
+        this.executor = Executors.newFixedThreadPool(threads, new SearchThreadFactory());
+    }
+
+    /**
+     * @return the {@code k} best results of {@code query}, once they are found.
+     */
+    public CompletableFuture<List<Result>> submit(final String query, final int k) {
+        checkNotNull(query);
+        checkArgument(k > 0, "k must be positive");
+        return CompletableFuture.supplyAsync(() -> ImmutableList.copyOf(searcher.search(query, k)), executor);
+    }
+
+    /**
+     * Submits every query at once, the returned futures are in the same order as the queries.
+     */
+    public List<CompletableFuture<List<Result>>> submitAll(final Iterable<String> queries, final int k) {
+        checkNotNull(queries);
+        final ImmutableList.Builder<CompletableFuture<List<Result>>> futures = ImmutableList.builder();
+        for (final String query : queries) {
+            futures.add(submit(query, k));
+        }
+        return futures.build();
+    }
+
+    /**
+     * Submits every query of the stream before returning, the returned futures are in the same order as the queries.
+     */
+    public Stream<CompletableFuture<List<Result>>> submitAll(final Stream<String> queries, final int k) {
+        checkNotNull(queries);
+        return queries.map(query -> submit(query, k)).collect(toList()).stream();
+    }
+
+    /**
+     * Stops accepting queries and waits for the submitted ones to finish.
+     */
+    @Override public void close() {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.info("Waiting for queries to finish.");
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class SearchThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        @Override public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "search-" + count.getAndIncrement());
+            // searches never write, an abandoned executor must not keep the application alive
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
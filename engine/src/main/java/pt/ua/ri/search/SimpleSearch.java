@@ -16,23 +16,21 @@
  */
 package pt.ua.ri.search;
 
-import com.google.common.collect.ImmutableList;
-import gnu.trove.iterator.TIntDoubleIterator;
-import gnu.trove.map.TIntDoubleMap;
-import gnu.trove.map.hash.TIntDoubleHashMap;
 import pt.ua.ri.document.DocumentSchema;
+import pt.ua.ri.index.DocIdBitmap;
 import pt.ua.ri.index.Index;
-import pt.ua.ri.index.IndexTuple;
+import pt.ua.ri.index.PostingsCursor;
 import pt.ua.ri.search.results.Result;
-import pt.ua.ri.search.results.SimpleResult;
 import pt.ua.ri.tokenizer.Tokenizer;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
 import java.util.Optional;
 
-import static com.google.common.collect.Maps.transformValues;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Comparator.comparingDouble;
+import static pt.ua.ri.index.PostingsCursor.NO_MORE_DOCS;
 
 /*
 
@@ -52,46 +50,116 @@ public class SimpleSearch<S extends DocumentSchema<S>> implements Search<S> {
         this.tok = tok;
     }
 
-    @Override public Iterable<Result> search(String query) {
-
-        // get an optional tuple for each query term
-        final Map<String, Optional<IndexTuple>> tuples = index.query(query);
-        final double logDocumentFrequency = Math.log(index.numberOfDocuments());
-
-        Map<String, Double> idf = transformValues(tuples, v -> v != null ?
-                                                               logDocumentFrequency - Math.log(
-                                                                       v.map(IndexTuple::getDocumentFrequency)
-                                                                               .orElse(0)) :
-                                                               0);
-
-
-        final double queryLength = Math.sqrt(idf.values().parallelStream().mapToDouble(v -> v * v).sum());
-        final double factor = 1.0 / queryLength;
-        idf.replaceAll((word, value) -> value * factor);
-
-        final TIntDoubleMap scoreMap = new TIntDoubleHashMap();
+    /**
+     * Document-at-a-time MaxScore: query terms are ordered by the highest score they can contribute, and the terms
+     * whose bounds together cannot beat the current k-th score are only probed for documents found by the others.
+     * Probes first check the block-max bound of the block that would hold the document, so most candidates are
+     * rejected without decoding the postings of the weak terms.
+     */
+    @Override public Iterable<Result> search(final String query, final int k) {
+        return search(query, k, null);
+    }
 
+    /**
+     * @param filter the only documents that may be returned, {@code null} for any; the others are skipped before
+     *               they are scored.
+     */
+    Iterable<Result> search(final String query, final int k, final DocIdBitmap filter) {
+        checkArgument(k > 0, "k must be positive");
 
-        tuples.forEach((word, tuple) -> tuple.map(IndexTuple::getDocumentsInfo)
-                .ifPresent(idx -> idx.forEach((docId, documentInfo) -> {
-                    final double deltaScore = idf.get(word) * documentInfo.getNormalizedDocumentFrequency();
-                    scoreMap.adjustOrPutValue(docId, deltaScore, deltaScore);
-                })));
+        // get an optional posting cursor for each query term
+        final Map<String, Optional<PostingsCursor>> postings = index.queryPostings(query);
+        final double logDocumentFrequency = Math.log(index.numberOfDocuments());
 
-        return ImmutableList.sortedCopyOf(() -> new Iterator<Result>() {
-            private final TIntDoubleIterator iterator = scoreMap.iterator();
+        final List<TermScorer> scorers = new ArrayList<>(postings.size());
+        postings.forEach((word, cursor) -> cursor.ifPresent(c -> scorers.add(
+                new TermScorer(c, logDocumentFrequency - Math.log(c.size()), index.getMaxWeight(word)))));
+
+        final double queryLength = Math.sqrt(scorers.stream().mapToDouble(s -> s.queryWeight * s.queryWeight).sum());
+        final double factor = queryLength > 0 ? 1.0 / queryLength : 0.0;
+        scorers.forEach(scorer -> scorer.normalize(factor));
+        scorers.sort(comparingDouble(scorer -> scorer.maxScore));
+
+        final int n = scorers.size();
+        final double[] bounds = new double[n]; // bounds[i] is the best score terms 0..i can add up to
+        double bound = 0.0;
+        for (int i = 0; i < n; i++) {
+            bound += scorers.get(i).maxScore;
+            bounds[i] = bound;
+            scorers.get(i).cursor.next();
+        }
+
+        final TopKCollector collector = new TopKCollector(k);
+        int firstEssential = 0;
+        while (firstEssential < n) {
+            int docId = NO_MORE_DOCS;
+            for (int i = firstEssential; i < n; i++) {
+                docId = Math.min(docId, scorers.get(i).cursor.docId());
+            }
+            if (docId == NO_MORE_DOCS) {
+                break;
+            }
+            if (filter != null && !filter.contains(docId)) {
+                final int target = filter.next(docId);
+                for (int i = firstEssential; i < n; i++) {
+                    scorers.get(i).cursor.advance(target);
+                }
+                continue;
+            }
 
-            @Override public boolean hasNext() {
-                return iterator.hasNext();
+            double score = 0.0;
+            for (int i = firstEssential; i < n; i++) {
+                final TermScorer scorer = scorers.get(i);
+                if (scorer.cursor.docId() == docId) {
+                    score += scorer.score();
+                    scorer.cursor.next();
+                }
+            }
+            for (int i = firstEssential - 1; i >= 0 && score + bounds[i] > collector.threshold(); i--) {
+                final TermScorer scorer = scorers.get(i);
+                // the block holding docId may bound this term far below its global maximum
+                final double others = i > 0 ? bounds[i - 1] : 0.0;
+                if (score + others + scorer.blockMaxScore(docId) <= collector.threshold()) {
+                    break;
+                }
+                if (scorer.cursor.advance(docId) == docId) {
+                    score += scorer.score();
+                }
             }
 
-            @Override public Result next() {
-                if (!hasNext()) {
-                    throw new NoSuchElementException();
+            if (collector.collect(docId, score)) {
+                while (firstEssential < n && bounds[firstEssential] <= collector.threshold()) {
+                    firstEssential++;
                 }
-                iterator.advance();
-                return new SimpleResult(iterator.key(), iterator.value());
             }
-        });
+        }
+
+        return collector.results();
+    }
+
+    private static class TermScorer {
+        private final PostingsCursor cursor;
+        private final float maxWeight;
+        private double queryWeight;
+        private double maxScore;
+
+        TermScorer(final PostingsCursor cursor, final double idf, final float maxWeight) {
+            this.cursor = cursor;
+            this.queryWeight = idf;
+            this.maxWeight = maxWeight;
+        }
+
+        void normalize(final double factor) {
+            queryWeight *= factor;
+            maxScore = queryWeight * maxWeight;
+        }
+
+        double score() {
+            return queryWeight * cursor.weight();
+        }
+
+        double blockMaxScore(final int docId) {
+            return queryWeight * cursor.maxWeight(docId);
+        }
     }
 }
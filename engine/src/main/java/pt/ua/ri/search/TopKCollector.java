@@ -0,0 +1,114 @@
+package pt.ua.ri.search;
+
+import pt.ua.ri.search.results.Result;
+import pt.ua.ri.search.results.SimpleResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Keeps the {@code k} best scored documents in a bounded binary min-heap over primitive arrays, so the lowest score
+ * still in the top-k is available in constant time.
+ *
+ * @author tiago.novo
+ */
+final class TopKCollector {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int k;
+    private int[] docIds;
+    private double[] scores;
+    private int size;
+
+    TopKCollector(final int k) {
+        checkArgument(k > 0, "k must be positive");
+        this.k = k;
+        final int capacity = Math.min(k, INITIAL_CAPACITY);
+        this.docIds = new int[capacity];
+        this.scores = new double[capacity];
+    }
+
+    /**
+     * @return the score a document has to beat to enter the top-k, negative infinity while it is not full.
+     */
+    double threshold() {
+        return size < k ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    /**
+     * @return true if the document entered the top-k.
+     */
+    boolean collect(final int docId, final double score) {
+        if (size < k) {
+            if (size == docIds.length) {
+                final int capacity = (int) Math.min(k, 2L * size);
+                docIds = Arrays.copyOf(docIds, capacity);
+                scores = Arrays.copyOf(scores, capacity);
+            }
+            docIds[size] = docId;
+            scores[size] = score;
+            siftUp(size++);
+            return true;
+        }
+        if (score <= scores[0]) {
+            return false;
+        }
+        docIds[0] = docId;
+        scores[0] = score;
+        siftDown(0);
+        return true;
+    }
+
+    /**
+     * @return the collected documents, best first.
+     */
+    List<Result> results() {
+        final List<Result> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            results.add(new SimpleResult(docIds[i], scores[i]));
+        }
+        results.sort(Comparator.<Result>naturalOrder().thenComparingInt(Result::getDocId));
+        return results;
+    }
+
+    private void siftUp(int i) {
+        final int docId = docIds[i];
+        final double score = scores[i];
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            if (scores[parent] <= score) {
+                break;
+            }
+            docIds[i] = docIds[parent];
+            scores[i] = scores[parent];
+            i = parent;
+        }
+        docIds[i] = docId;
+        scores[i] = score;
+    }
+
+    private void siftDown(int i) {
+        final int docId = docIds[i];
+        final double score = scores[i];
+        final int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && scores[child + 1] < scores[child]) {
+                child++;
+            }
+            if (score <= scores[child]) {
+                break;
+            }
+            docIds[i] = docIds[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        docIds[i] = docId;
+        scores[i] = score;
+    }
+}
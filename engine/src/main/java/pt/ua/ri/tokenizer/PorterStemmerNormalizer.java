@@ -17,18 +17,24 @@
  */
 package pt.ua.ri.tokenizer;
 
-import org.tartarus.snowball.SnowballStemmer;
-import org.tartarus.snowball.ext.englishStemmer;
-
 import java.util.function.Function;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 public class PorterStemmerNormalizer extends TokenizerExtender implements Function<CharSequence, CharSequence> {
 
-    private final SnowballStemmer stem;
+    private final StemmingFunction stem;
 
     public PorterStemmerNormalizer(Tokenizer tok) {
+        this(tok, new StemmingFunction());
+    }
+
+    /**
+     * @param stem may be shared with other tokenizers, along with the stems it remembers.
+     */
+    public PorterStemmerNormalizer(Tokenizer tok, StemmingFunction stem) {
         super(tok);
-        stem = new englishStemmer();
+        this.stem = checkNotNull(stem);
     }
 
     @Override public CharSequence apply(final CharSequence charSequence) {
@@ -36,9 +42,7 @@ public class PorterStemmerNormalizer extends TokenizerExtender implements Functi
     }
 
     @Override public CharSequence cleanWord(CharSequence str) {
-        stem.setCurrent(str.toString());
-        stem.stem();
-        return stem.getCurrent();
+        return stem.apply(str);
     }
 
 }
@@ -1,5 +1,8 @@
 package pt.ua.ri.tokenizer;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tartarus.snowball.SnowballStemmer;
@@ -7,21 +10,64 @@ import org.tartarus.snowball.ext.englishStemmer;
 
 import java.util.function.Function;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 /**
+ * English Snowball stemming with a stemmer per calling thread and a memo of the stems of recent words. Europarl
+ * vocabulary is very repetitive, so most words are answered by the memo and stemming threads never wait on each
+ * other. Thread safe.
+ *
  * @author tiago.novo
  */
 public class StemmingFunction implements Function<CharSequence, CharSequence> {
+    public static final long UNBOUNDED = 0;
+    private static final long MEMO_DEFAULT = 1L << 16;
     private static final Logger logger = LoggerFactory.getLogger(StemmingFunction.class);
-    private final SnowballStemmer stem = new englishStemmer();
+    private final ThreadLocal<SnowballStemmer> stemmers = ThreadLocal.withInitial(englishStemmer::new);
+    private final Cache<String, String> memo;
+
+    public StemmingFunction() {
+        this(MEMO_DEFAULT);
+    }
+
+    /**
+     * @param maximumSize number of stems remembered, or {@link #UNBOUNDED}.
+     */
+    public StemmingFunction(final long maximumSize) {
+        checkArgument(maximumSize >= 0, "Maximum size must not be negative");
+        final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                .recordStats();
+        this.memo = (maximumSize == UNBOUNDED ? builder : builder.maximumSize(maximumSize)).build();
+    }
+
+    @Override public CharSequence apply(final CharSequence str) {
+        final String word = str.toString();
+        final String cached = memo.getIfPresent(word);
+        if (cached != null) {
+            return cached;
+        }
+        final String stem = stem(word);
+        memo.put(word, stem);
+        return stem;
+    }
+
+    /**
+     * @return hits are words answered by the memo, misses are words the stemmer ran on.
+     */
+    public CacheStats stats() {
+        return memo.stats();
+    }
 
-    @Override public synchronized CharSequence apply(final CharSequence str) {
+    private String stem(final String word) {
         try {
-            stem.setCurrent(str.toString());
+            final SnowballStemmer stem = stemmers.get();
+            stem.setCurrent(word);
             stem.stem();
             return stem.getCurrent();
         } catch (Exception e) {
-            logger.error("Error stemming: {}", str, e);
-            return str;
+            logger.error("Error stemming: {}", word, e);
+            return word;
         }
     }
 }
@@ -1,73 +1,190 @@
 package pt.ua.ri.tokenizer;
 
 import com.google.common.base.Preconditions;
-import org.apache.commons.collections4.trie.PatriciaTrie;
 
-import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
-import java.util.*;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.regex.Pattern;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
-import static java.util.Optional.ofNullable;
-
 /**
+ * Splits text in whitespace separated words and keeps those with a run of at least {@value #MIN_RUN} ASCII letters,
+ * normalized to their lowercase ASCII letters. Any other character, accented letters included, only separates runs.
+ * <p>
+ * Words are scanned in place and lowercased into a buffer owned by each token stream; the buffer is looked up in a
+ * {@link SurfaceFormCache}, so filters, normalizations and a new {@code String} only happen the first time a form is
+ * seen, or after it was evicted. Normalized terms are interned in a {@link TermDictionary}, which may be shared with
+ * other tokenizers. Queries are tokenized without growing either: a form seen for the first time in a query is
+ * looked up, not remembered. Thread safe, as long as filters and normalizations are added before tokenizing.
+ *
  * @author tiago.novo
  */
 public class StreamTokenizer {
 
-    private final static Predicate<String> SIZE_CHECKER = s -> s.length() >= 3;
-    private final static Pattern WORD_PATTERN = Pattern.compile("\\p{L}{3,}(?:(?:-(?:\\p{L}){2,}?)|'s)?");
-    private final static Charset ascii = StandardCharsets.US_ASCII;
-    private final static Charset utf8 = StandardCharsets.UTF_8;
-
-    private static Stream<String> breakIntoWords(final CharSequence line) {
-        Preconditions.checkNotNull(line);
+    private static final int MIN_RUN = 3;
+    private static final int INITIAL_BUFFER = 32;
 
-        final StringTokenizer tokenizer = new StringTokenizer(new String(line.toString().getBytes(utf8), ascii));
-
-        return StreamSupport.stream(Spliterators.spliterator(new Iterator<String>() {
-            @Override public boolean hasNext() {
-                return tokenizer.hasMoreTokens();
-            }
+    private static boolean isSeparator(final char c) {
+        // the delimiters of StringTokenizer
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
 
-            @Override public String next() {
-                return tokenizer.nextToken();
-            }
-        }, tokenizer.countTokens(), Spliterator.IMMUTABLE | Spliterator.ORDERED | Spliterator.SIZED), false);
+    private static boolean isAsciiLetter(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
     }
 
-    private final Map<String, Token> tokens;
+    private final TermDictionary dictionary;
+    // keyed by the lowercase letters of each word
+    private final SurfaceFormCache surfaceForms;
     private Predicate<String> predicate;
     private Function<CharSequence, CharSequence> normalizer;
 
     public StreamTokenizer() {
-        predicate = SIZE_CHECKER.and(WORD_PATTERN.asPredicate());
-        normalizer = str -> str.codePoints()
-                .filter(Character::isLetter)
-                .map(Character::toLowerCase)
-                .collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append);
+        this(new TermDictionary(), SurfaceFormCache.UNBOUNDED);
+    }
 
-        tokens = new PatriciaTrie<>();
+    /**
+     * @param maximumSurfaceForms number of surface forms remembered, or {@link SurfaceFormCache#UNBOUNDED}.
+     */
+    public StreamTokenizer(final TermDictionary dictionary, final long maximumSurfaceForms) {
+        this.dictionary = Preconditions.checkNotNull(dictionary);
+        this.surfaceForms = new SurfaceFormCache(maximumSurfaceForms);
+        this.predicate = word -> true;
+        this.normalizer = Function.identity();
     }
 
+    public TermDictionary getDictionary() {
+        return dictionary;
+    }
+
+    public SurfaceFormCache getSurfaceForms() {
+        return surfaceForms;
+    }
+
+    /**
+     * @param filterCondition tested on the lowercase letters of each word, before any normalization; words it rejects
+     *                        are dropped.
+     */
     public void addFilter(Predicate<String> filterCondition) {
         predicate = predicate.and(filterCondition);
+        surfaceForms.clear();
     }
 
     public void addNormalization(Function<CharSequence, CharSequence> transform) {
         normalizer = normalizer.andThen(transform);
+        surfaceForms.clear();
     }
 
+    /**
+     * @return a sequential stream of the tokens of every line, in order.
+     */
     public Stream<Token> tokenize(final Stream<String> lines) {
         Preconditions.checkNotNull(lines);
-        final Stream<String> words = lines.flatMap(StreamTokenizer::breakIntoWords);
-        final Stream<String> filteredWords = words.filter(predicate);
-        final Stream<CharSequence> normalizedWords = filteredWords.map(normalizer);
-        return normalizedWords.map(CharSequence::toString)
-                .map((word) -> tokens.compute(word, (key, token) -> ofNullable(token).orElse(new Token(key))));
+        final WordScanner scanner = new WordScanner(true);
+        return lines.flatMap(line -> StreamSupport.stream(scanner.reset(line), false));
+    }
+
+    /**
+     * Like {@link #tokenize(Stream)}, but terms missing from the dictionary get tokens outside of it, with
+     * {@link Token#NO_ID}, and new surface forms are not cached. For text that is only searched, such as queries.
+     */
+    public Stream<Token> tokenizeQuery(final Stream<String> lines) {
+        Preconditions.checkNotNull(lines);
+        final WordScanner scanner = new WordScanner(false);
+        return lines.flatMap(line -> StreamSupport.stream(scanner.reset(line), false));
+    }
+
+    private Optional<Token> newSurfaceForm(final char[] letters, final int length) {
+        final String word = new String(letters, 0, length);
+        final Optional<Token> token = predicate.test(word) ?
+                                      Optional.of(dictionary.intern(normalizer.apply(word).toString())) :
+                                      Optional.empty();
+        return surfaceForms.put(word, token);
+    }
+
+    private Optional<Token> lookupSurfaceForm(final char[] letters, final int length) {
+        final String word = new String(letters, 0, length);
+        return predicate.test(word) ?
+               Optional.of(dictionary.lookup(normalizer.apply(word).toString())) :
+               Optional.empty();
+    }
+
+    /**
+     * State machine over a single line: it is either between words or inside one, where it keeps the lowercase
+     * letters seen so far, the length of the current run of letters and whether a run was long enough. The same
+     * scanner, and its buffer, is reused for every line of a stream.
+     */
+    private class WordScanner extends Spliterators.AbstractSpliterator<Token> {
+        // whether new forms are interned and cached, or only looked up
+        private final boolean interning;
+        private char[] letters;
+        private CharBuffer key;
+        private CharSequence line;
+        private int position;
+
+        WordScanner(final boolean interning) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.interning = interning;
+            this.letters = new char[INITIAL_BUFFER];
+            this.key = CharBuffer.wrap(letters);
+        }
+
+        WordScanner reset(final CharSequence line) {
+            this.line = Preconditions.checkNotNull(line);
+            this.position = 0;
+            return this;
+        }
+
+        private CharBuffer key(final int length) {
+            key.clear();
+            key.limit(length);
+            return key;
+        }
+
+        @Override public boolean tryAdvance(final Consumer<? super Token> action) {
+            final int end = line.length();
+            while (position < end) {
+                while (position < end && isSeparator(line.charAt(position))) {
+                    position++;
+                }
+                int length = 0;
+                int run = 0;
+                boolean accepted = false;
+                while (position < end) {
+                    final char c = line.charAt(position);
+                    if (isSeparator(c)) {
+                        break;
+                    }
+                    position++;
+                    if (isAsciiLetter(c)) {
+                        if (length == letters.length) {
+                            letters = Arrays.copyOf(letters, length << 1);
+                            key = CharBuffer.wrap(letters);
+                        }
+                        letters[length++] = (char) (c | 0x20);
+                        accepted |= ++run >= MIN_RUN;
+                    } else {
+                        run = 0;
+                    }
+                }
+                if (accepted) {
+                    Optional<Token> token = surfaceForms.get(key(length));
+                    if (token == null) {
+                        token = interning ? newSurfaceForm(letters, length) : lookupSurfaceForm(letters, length);
+                    }
+                    if (token.isPresent()) {
+                        action.accept(token.get());
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
     }
 }
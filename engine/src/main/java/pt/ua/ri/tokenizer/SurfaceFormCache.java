@@ -0,0 +1,66 @@
+package pt.ua.ri.tokenizer;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.nio.CharBuffer;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Surface forms a tokenizer has already seen and the token each one normalized to, or empty if its filters rejected
+ * it. Lookups take a {@link CharBuffer}, so a tokenizer can probe with a view of its own scratch buffer instead of a
+ * new {@code String}. When bounded, the least recently used forms are evicted and simply recomputed if seen again.
+ * Thread safe.
+ *
+ * @author tiago.novo
+ */
+public final class SurfaceFormCache {
+
+    public static final long UNBOUNDED = 0;
+
+    private final Cache<CharBuffer, Optional<Token>> forms;
+
+    /**
+     * @param maximumSize number of forms kept, or {@link #UNBOUNDED}.
+     */
+    public SurfaceFormCache(final long maximumSize) {
+        checkArgument(maximumSize >= 0, "Maximum size must not be negative");
+        final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                .recordStats();
+        this.forms = (maximumSize == UNBOUNDED ? builder : builder.maximumSize(maximumSize)).build();
+    }
+
+    /**
+     * @param form read, but neither kept nor moved; it may be a view of a buffer the caller reuses.
+     * @return the cached outcome for {@code form}, {@code null} if it was never seen or was evicted.
+     */
+    Optional<Token> get(final CharBuffer form) {
+        return forms.getIfPresent(checkNotNull(form));
+    }
+
+    /**
+     * @return {@code token}, after remembering it as the outcome of {@code form}.
+     */
+    Optional<Token> put(final String form, final Optional<Token> token) {
+        checkNotNull(token);
+        forms.put(CharBuffer.wrap(form), token);
+        return token;
+    }
+
+    void clear() {
+        forms.invalidateAll();
+    }
+
+    public long size() {
+        return forms.size();
+    }
+
+    public CacheStats stats() {
+        return forms.stats();
+    }
+}
@@ -0,0 +1,60 @@
+package pt.ua.ri.tokenizer;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Normalized terms and their tokens, numbered densely from zero in the order they are first seen. Tokenizers sharing
+ * a dictionary hand out the same token, and term id, for the same term, so the indexer can key its buffers by id.
+ * Terms are never evicted, as ids must stay valid while they are in use; the per tokenizer {@link SurfaceFormCache}
+ * is what keeps the raw spellings bounded. Thread safe.
+ *
+ * @author tiago.novo
+ */
+public final class TermDictionary {
+
+    private final ConcurrentMap<String, Token> terms;
+    private final AtomicInteger nextId;
+
+    public TermDictionary() {
+        this.terms = new ConcurrentHashMap<>();
+        this.nextId = new AtomicInteger(0);
+    }
+
+    /**
+     * @return the token of {@code term}, created with the next free id if the term is new.
+     */
+    public Token intern(final String term) {
+        checkNotNull(term);
+        checkArgument(!term.isEmpty(), "Term must not be empty");
+        final Token token = terms.get(term);
+        return token != null ? token : terms.computeIfAbsent(term, t -> new Token(nextId.getAndIncrement(), t));
+    }
+
+    /**
+     * @return the token of {@code term} if it is in the dictionary, otherwise a token with {@link Token#NO_ID} that is
+     * not added to it, so looking up terms never grows the dictionary.
+     */
+    public Token lookup(final String term) {
+        checkNotNull(term);
+        checkArgument(!term.isEmpty(), "Term must not be empty");
+        final Token token = terms.get(term);
+        return token != null ? token : new Token(Token.NO_ID, term);
+    }
+
+    public Optional<Token> get(final String term) {
+        return Optional.ofNullable(terms.get(checkNotNull(term)));
+    }
+
+    /**
+     * @return number of terms, which is also one more than the highest id handed out.
+     */
+    public int size() {
+        return nextId.get();
+    }
+}
@@ -1,26 +1,36 @@
 package pt.ua.ri.tokenizer;
 
-import java.util.concurrent.atomic.AtomicLong;
-
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
+ * A normalized term, interned by a {@link TermDictionary}: within a dictionary there is a single token per term, so
+ * tokens compare by identity. Query terms missing from the dictionary get throwaway tokens with {@link #NO_ID}.
+ *
  * @author tiago.novo
  */
-public class Token {
-    private static final AtomicLong number = new AtomicLong(0L);
-    private final long id;
-    private String string;
+public final class Token {
+
+    /**
+     * Id of the tokens of query terms that are not in the dictionary, which are never interned.
+     */
+    public static final int NO_ID = -1;
 
-    Token(final String s) {
+    private final int id;
+    private final String string;
+
+    Token(final int id, final String s) {
         checkNotNull(s);
         checkArgument(!s.isEmpty());
-        this.id = number.getAndIncrement();
+        checkArgument(id >= NO_ID);
+        this.id = id;
         this.string = s;
     }
 
-    public long getId() {
+    /**
+     * @return dense id of the term in its dictionary, {@link #NO_ID} if it is not in one.
+     */
+    public int getId() {
         return id;
     }
 
@@ -28,7 +38,7 @@ public class Token {
         return string;
     }
 
-    public void setString(final String string) {
-        this.string = string;
+    @Override public String toString() {
+        return string;
     }
 }
@@ -28,4 +28,9 @@ public interface Tokenizer extends Iterator<Token> {
     boolean isAcceptableWord(CharSequence word);
 
     void setText(CharSequence cs);
+
+    /**
+     * @return the dictionary the returned tokens are interned in.
+     */
+    TermDictionary getDictionary();
 }
@@ -42,6 +42,10 @@ public abstract class TokenizerExtender implements Tokenizer {
         findNext();
     }
 
+    @Override public TermDictionary getDictionary() {
+        return tok.getDictionary();
+    }
+
     @Override public boolean hasNext() {
         return next != null;
     }
@@ -61,9 +65,9 @@ public abstract class TokenizerExtender implements Tokenizer {
         while (tok.hasNext()) {
             nx = tok.next();
             if (isAcceptableWord(nx.getString())) {
-                final CharSequence nextString = cleanWord(nx.getString());
-                nx.setString(nextString.toString());
-                next = nx;
+                // tokens are shared, so a changed word is interned as a token of its own
+                final String nextString = cleanWord(nx.getString()).toString();
+                next = nextString.equals(nx.getString()) ? nx : getDictionary().intern(nextString);
                 break;
             }
         }
@@ -16,17 +16,15 @@
  */
 package pt.ua.ri.tokenizer;
 
-import org.apache.commons.collections4.trie.PatriciaTrie;
-
+import java.nio.CharBuffer;
 import java.text.BreakIterator;
 import java.util.Locale;
-import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Optional;
 import java.util.regex.Pattern;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
-import static java.util.Objects.nonNull;
 
 /**
  * @author Tiago Novo <tmnovo at ua.pt>
@@ -34,23 +32,37 @@ import static java.util.Objects.nonNull;
 public class WordTokenizer implements Tokenizer {
 
     private final static Pattern word = Pattern.compile("\\p{L}{3,}(?:(?:-(?:\\p{L}){2,})|'s)?");
-    private final Map<String, Token> tokens;
+    private final TermDictionary dictionary;
+    // dirty spellings, as split by the break iterator
+    private final SurfaceFormCache surfaceForms;
     private final BreakIterator bi;
     private final StringBuilder bf;
     private Token current;
     private int nextIndex;
 
     public WordTokenizer() {
-        this(Locale.ENGLISH.getCountry());
+        this(new TermDictionary(), SurfaceFormCache.UNBOUNDED);
+    }
+
+    /**
+     * @param maximumSurfaceForms number of dirty spellings remembered, or {@link SurfaceFormCache#UNBOUNDED}.
+     */
+    public WordTokenizer(final TermDictionary dictionary, final long maximumSurfaceForms) {
+        this(Locale.ENGLISH.getCountry(), dictionary, new SurfaceFormCache(maximumSurfaceForms));
     }
 
-    private WordTokenizer(String locale) {
+    private WordTokenizer(String locale, final TermDictionary dictionary, final SurfaceFormCache surfaceForms) {
         checkNotNull(locale);
+        this.dictionary = checkNotNull(dictionary);
+        this.surfaceForms = checkNotNull(surfaceForms);
         bi = BreakIterator.getWordInstance(Locale.forLanguageTag(locale));
-        tokens = new PatriciaTrie<>();
         bf = new StringBuilder();
     }
 
+    @Override public TermDictionary getDictionary() {
+        return dictionary;
+    }
+
     @Override public CharSequence cleanWord(final CharSequence word) {
         checkNotNull(word);
         return word.codePoints()
@@ -74,7 +86,7 @@ public class WordTokenizer implements Tokenizer {
     }
 
     @Override public boolean hasNext() {
-        return nonNull(bf) && (nextIndex != BreakIterator.DONE);
+        return current != null;
     }
 
     @Override public Token next() {
@@ -88,25 +100,24 @@ public class WordTokenizer implements Tokenizer {
 
     private void findNext() {
         checkState(bf.length() > 0);
-        CharSequence dirtySequence;
-        String dirtyString;
-        Token nextToken;
-        do {
-            int firstIndex = nextIndex;
+        current = null;
+        while (current == null && nextIndex != BreakIterator.DONE) {
+            final int firstIndex = nextIndex;
             nextIndex = bi.next();
-            dirtySequence = bf.subSequence(firstIndex, (nextIndex == BreakIterator.DONE) ? bi.last() : nextIndex);
-            dirtyString = dirtySequence.toString();
-            nextToken = tokens.getOrDefault(dirtyString, null);
-
-        } while (nextToken == null && !isAcceptableWord(dirtySequence) && hasNext());
-        if (nextToken == null) {
-            final String afterNormalization = cleanWord(dirtySequence).toString();
-            nextToken = tokens.compute(afterNormalization, (key, token) -> token == null ? new Token(key) : token);
-            // also store the dirty sequence, to increase performance
-            tokens.putIfAbsent(dirtyString, nextToken);
+            final CharSequence dirtySequence =
+                    bf.subSequence(firstIndex, (nextIndex == BreakIterator.DONE) ? bi.last() : nextIndex);
+            Optional<Token> token = surfaceForms.get(CharBuffer.wrap(dirtySequence));
+            if (token == null) {
+                token = newSurfaceForm(dirtySequence.toString());
+            }
+            current = token.orElse(null);
         }
-        current = nextToken;
-
     }
 
+    private Optional<Token> newSurfaceForm(final String dirtyString) {
+        final Optional<Token> token = isAcceptableWord(dirtyString) ?
+                                      Optional.of(dictionary.intern(cleanWord(dirtyString).toString())) :
+                                      Optional.empty();
+        return surfaceForms.put(dirtyString, token);
+    }
 }
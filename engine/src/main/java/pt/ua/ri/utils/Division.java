@@ -19,90 +19,51 @@ package pt.ua.ri.utils;
 
 import com.google.common.base.Preconditions;
 
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
-
-import static java.util.stream.Collectors.joining;
-
 /**
+ * A range of terms written to its own postings and lexicon files: from its first term, inclusive, up to the first
+ * term of the next division, or to the end if it is the last one.
+ *
  * @author Tiago Novo <tmnovo at ua.pt>
  */
 public class Division {
 
-    static final Division ANY = new Division("A", "Z");
-    private final String prefixStart, prefixEnd;
-
-    private Division(String prefixStart, String prefixEnd) {
-        Preconditions.checkNotNull(prefixStart);
-        Preconditions.checkNotNull(prefixEnd);
-        Preconditions.checkArgument(prefixStart.compareToIgnoreCase(prefixEnd) < 0,
-                "Prefixes must be in alphabetical order");
-        this.prefixStart = prefixStart.toUpperCase();
-        this.prefixEnd = prefixEnd.toUpperCase();
+    private final int number;
+    private final String first, end;
+
+    /**
+     * @param end exclusive, {@code null} for none.
+     */
+    Division(final int number, final String first, final String end) {
+        Preconditions.checkArgument(number >= 0, "Division numbers must not be negative");
+        Preconditions.checkNotNull(first);
+        Preconditions.checkArgument(end == null || first.compareTo(end) < 0, "Terms must be in order");
+        this.number = number;
+        this.first = first;
+        this.end = end;
     }
 
-    public String getFilename() {
-        return "result" + toString() + ".txt";
+    public static String getFilename(final int number) {
+        return "result(" + number + ").txt";
     }
 
-    public boolean inRange(final String str) {
-        Preconditions.checkNotNull(str);
-        return (prefixStart.compareToIgnoreCase(str) <= 0) &&
-               (prefixEnd.compareToIgnoreCase(str) >= 0 || str.toUpperCase().startsWith(prefixEnd));
+    public static String getLexiconFilename(final int number) {
+        return "result(" + number + ").lex";
     }
 
-    @Override public String toString() {
-        return Stream.of(prefixStart, prefixEnd).collect(joining("-", "(", ")"));
+    public String getFilename() {
+        return getFilename(number);
     }
 
-    // TODO: Refactor this shit. it's ugly as fuck
-    Division[] split(final int nDivs) {
-        Preconditions.checkArgument(nDivs > 0);
-        final int tNDivs = Math.min(13, nDivs);
-        final StringBuffer mp[][] = new StringBuffer[tNDivs][2];
-
-        mp[0][0] = new StringBuffer(this.prefixStart);
-        mp[tNDivs - 1][1] = new StringBuffer(this.prefixEnd);
-        for (int i = 1; i < tNDivs; i++) {
-            mp[i - 1][1] = new StringBuffer();
-            mp[i][0] = new StringBuffer();
-        }
-        int j;
-        for (j = 0;
-             j < Math.min(prefixStart.length(), prefixEnd.length()) && prefixStart.charAt(j) == prefixEnd.charAt(j);
-             j++) {
-            char c = prefixStart.charAt(j);
-            for (int i = 1; i < tNDivs; i++) {
-                mp[i - 1][1].append(c);
-                mp[i][0].append(c);
-            }
-        }
-
-        char st;
-        if (j < prefixStart.length()) {
-            st = prefixStart.charAt(j);
-        } else {
-            st = 'A';
-        }
-        char en;
-        if (j < prefixEnd.length()) {
-            en = prefixEnd.charAt(j);
-        } else {
-            en = 'Z';
-        }
-
-        int step = (en - st + 1) / tNDivs;
-
-
-        for (int i = 1; i < tNDivs; i++) {
-            char c = (char) (st + step * i);
-            mp[i - 1][1].append((char) (c - 1));
-            mp[i][0].append(c);
-        }
+    public String getLexiconFilename() {
+        return getLexiconFilename(number);
+    }
 
-        return IntStream.range(0, tNDivs)
-                .mapToObj(idx -> new Division(mp[idx][0].toString(), mp[idx][1].toString()))
-                .toArray(Division[]::new);
+    public boolean inRange(final String term) {
+        Preconditions.checkNotNull(term);
+        return first.compareTo(term) <= 0 && (end == null || end.compareTo(term) > 0);
     }
 
+    @Override public String toString() {
+        return "(" + number + ": " + first + "-" + (end == null ? "" : end) + ")";
+    }
 }
@@ -20,64 +20,68 @@ package pt.ua.ri.utils;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 
-import java.io.IOException;
-import java.nio.file.FileSystems;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.PathMatcher;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Objects;
 
 /**
+ * The divisions of an index, given by the first term of each but the first, which starts at the empty string.
+ * Boundaries are chosen when merging, from the terms actually indexed, and kept in the index manifest. Immutable.
+ *
  * @author mjrp1_000
  */
 public class Divisions implements Iterable<Division> {
-    private final static String RESULT_GLOB = "result(*-*).txt";
-    private static final PathMatcher pathMatcher = FileSystems.getDefault().getPathMatcher("glob:" + RESULT_GLOB);
 
-    public static int countExistingDivisions(final Path indexDir) throws IOException {
-        Preconditions.checkNotNull(indexDir, "Directory Path cannot be null");
-        return (int) Files.walk(indexDir, 1).filter(Files::isRegularFile).filter(pathMatcher::matches).count();
+    /**
+     * @param boundaries the first term of every division after the first one, in increasing order.
+     */
+    public static Divisions of(final List<String> boundaries) {
+        Preconditions.checkNotNull(boundaries, "Boundaries cannot be null");
+        final String[] firsts = new String[boundaries.size() + 1];
+        firsts[0] = "";
+        for (int i = 1; i < firsts.length; i++) {
+            firsts[i] = boundaries.get(i - 1);
+        }
+        return new Divisions(firsts);
     }
 
-    private List<Division> divisionList;
-
-    public Divisions() {
-        this(new Division[]{Division.ANY});
-    }
+    // sorted, firsts[i] is the first term of division i
+    private final String[] firsts;
+    private final List<Division> divisionList;
 
-    private Divisions(final Division[] divisionList) {
-        Preconditions.checkNotNull(divisionList, "Array cannot be null");
-        Preconditions.checkArgument(divisionList.length > 0, "Must have at least one division.", divisionList.length);
-        this.divisionList = ImmutableList.copyOf(divisionList);
+    private Divisions(final String[] firsts) {
+        final ImmutableList.Builder<Division> divisionList = ImmutableList.builder();
+        for (int i = 0; i < firsts.length; i++) {
+            divisionList.add(new Division(i, firsts[i], i + 1 < firsts.length ? firsts[i + 1] : null));
+        }
+        this.firsts = firsts;
+        this.divisionList = divisionList.build();
     }
 
     public Division getDivisionFor(final String word) {
         Preconditions.checkNotNull(word, "Word cannot be null");
         Preconditions.checkArgument(!word.isEmpty(), "Word must not be empty");
-        return divisionList.stream().filter(division -> division.inRange(word)).findFirst().orElse(Division.ANY);
+        final int i = Arrays.binarySearch(firsts, word);
+        // not a boundary: the division before the insertion point
+        return divisionList.get(i >= 0 ? i : -i - 2);
     }
 
-    @Override public Iterator<Division> iterator() {
-        return divisionList.iterator();
+    /**
+     * @return the first term of every division after the first one.
+     */
+    public List<String> getBoundaries() {
+        return ImmutableList.copyOf(firsts).subList(1, firsts.length);
     }
 
-    public void splitToHave(int newSize) {
-        Preconditions.checkArgument(newSize >= divisionList.size(), "Cannot decrease number of divisions", newSize,
-                divisionList.size());
-        if (newSize != divisionList.size()) {
-            final int nSplit = (int) (Math.ceil((double) (newSize) / divisionList.size()));
-            this.divisionList = divisionList.stream()
-                    .flatMap(division -> Arrays.stream(division.split(nSplit)).filter(Objects::nonNull))
-                    .collect(ImmutableList.toImmutableList());
+    public int size() {
+        return divisionList.size();
+    }
 
-        }
+    @Override public Iterator<Division> iterator() {
+        return divisionList.iterator();
     }
 
     @Override public String toString() {
         return divisionList.toString();
-
     }
 }
@@ -17,14 +17,10 @@
  */
 package pt.ua.ri.utils;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 /**
  * @author mjrp1_000
  */
 public class StaticUtils {
-    private static final Logger logger = LoggerFactory.getLogger(StaticUtils.class);
     private static final long memLimit;
     private static final Runtime r;
 
@@ -33,14 +29,6 @@ public class StaticUtils {
         memLimit = 4 * r.maxMemory() / 5;
     }
 
-    public static boolean memoryLimitReached() {
-        return estimatedUsedMemory() > memoryLimit();
-    }
-
-    public static boolean hasFreeMemory() {
-        return estimatedUsedMemory() < r.maxMemory() / 4;
-    }
-
     public static long estimatedUsedMemory() {
         return r.totalMemory() - r.freeMemory();
     }
@@ -48,10 +36,4 @@ public class StaticUtils {
     public static long memoryLimit() {
         return memLimit;
     }
-
-    public static void forceGarbageCollection() {
-        logger.debug("Garbage Collecting");
-        r.gc();
-        r.gc();
-    }
 }
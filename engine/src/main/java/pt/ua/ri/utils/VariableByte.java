@@ -0,0 +1,37 @@
+package pt.ua.ri.utils;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Variable-byte encoding of non-negative integers: 7 bits per byte, least significant group first, with the high bit
+ * set on every byte but the last.
+ *
+ * @author tiago.novo
+ */
+public final class VariableByte {
+
+    public static void write(final DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    public static int read(final ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private VariableByte() {
+    }
+}
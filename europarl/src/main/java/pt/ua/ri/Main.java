@@ -21,8 +21,10 @@ import org.slf4j.LoggerFactory;
 import pt.ua.ri.behaviour.Behaviour;
 import pt.ua.ri.behaviour.SearchBehaviour;
 import pt.ua.ri.behaviour.StreamIndexBehaviour;
+import pt.ua.ri.behaviour.StreamSearchBehaviour;
 import pt.ua.ri.config.Configuration;
 import pt.ua.ri.document.EuroParlSchema;
+import pt.ua.ri.index.PostingFormat;
 
 import java.io.IOException;
 import java.nio.file.Paths;
@@ -76,7 +78,10 @@ public class Main {
             final Pattern pat = Pattern.compile("p\\((.+)\\)");
             queries.replaceAll((String t) -> pat.matcher(t).replaceAll("\"$1\""));
             logger.info(queries.toString());
-            return new SearchBehaviour<>(confs, queries);
+            // several queries are answered concurrently
+            return queries.size() > 1 ?
+                   new StreamSearchBehaviour<>(confs, queries) :
+                   new SearchBehaviour<>(confs, queries);
         } else {
             confs = new Configuration<>(schema);
             for (int i = 0; i < args.length; i++) {
@@ -96,6 +101,33 @@ public class Main {
                     case "-cp": // path to corpus
                         confs.setCorpusPath(Paths.get(args[++i]));
                         break;
+                    case "-t": // number of indexing threads
+                        confs.setIndexingThreads(Integer.parseInt(args[++i]));
+                        break;
+                    case "-rt": // number of corpus reader threads
+                        confs.setReaderThreads(Integer.parseInt(args[++i]));
+                        break;
+                    case "-ram": // indexing buffer size in MB
+                        confs.setRamBufferSizeMB(Long.parseLong(args[++i]));
+                        break;
+                    case "-ds": // division file size in MB
+                        confs.setDivisionSizeMB(Long.parseLong(args[++i]));
+                        break;
+                    case "-pc": // posting list cache size in MB
+                        confs.setPostingsCacheSizeMB(Long.parseLong(args[++i]));
+                        break;
+                    case "-rc": // result cache size in MB
+                        confs.setResultCacheSizeMB(Long.parseLong(args[++i]));
+                        break;
+                    case "-sf": // surface forms, and stems, remembered by each tokenizer
+                        confs.setSurfaceForms(Long.parseLong(args[++i]));
+                        break;
+                    case "-mm": // memory map the index files
+                        confs.enableMemoryMapping();
+                        break;
+                    case "-pf": // posting list format
+                        confs.setPostingFormat(PostingFormat.valueOf(args[++i].toUpperCase()));
+                        break;
                     default:
                         logger.info("Unknown option: " + args[i]);
                 }
@@ -109,10 +141,24 @@ public class Main {
     private static void printUsage() {
         final String[][] usage = {{"Search", "-x <conf file>", "Configuration file"},
                 {"", "-q <query>", "Query to search for (allows multiple)(for proximity search use p(query)~d)"},
+                {"", "", "Restrict results with field:value or, for date, chapter_id and speaker_id, " +
+                         "field:[from TO to] (e.g. date:[2005 TO 2007-06], * for an open bound)"},
                 {"Index", "-bd <basepath>",
                         "Folder to store results (Default: " + Configuration.PP_BASE_PATH_DEFAULT + ")"},
                 {"", "-ps", "Enable Stemming"}, {"", "-sw <path to stopwords file>", "Enable stopwords"},
-                {"", "-cp <path to corpus>", "Path to corpus (Default: " + Configuration.PP_CORPUS_PATH_DEFAULT + ")"}};
+                {"", "-cp <path to corpus>", "Path to corpus (Default: " + Configuration.PP_CORPUS_PATH_DEFAULT + ")"},
+                {"", "-pf <TEXT|BINARY>", "Posting list format (Default: BINARY)"},
+                {"", "-mm", "Memory map the index files when searching"},
+                {"", "-ds <MB>", "Postings written to each index division file " +
+                                 "(Default: " + (Configuration.DIVISION_SIZE_DEFAULT >> 20) + ")"},
+                {"", "-pc <MB>", "Memory used to cache the stored posting lists when searching, 0 disables it " +
+                                 "(Default: " + (Configuration.POSTINGS_CACHE_DEFAULT >> 20) + ")"},
+                {"", "-rc <MB>", "Memory used to cache the rankings of recent queries (Default: 0, disabled)"},
+                {"", "-sf <forms>", "Surface forms and stems remembered by each tokenizer, 0 for no limit " +
+                                    "(Default: " + Configuration.SURFACE_FORMS_DEFAULT + ")"},
+                {"", "-t <threads>", "Number of indexing threads (Default: 1)"},
+                {"", "-rt <threads>", "Number of corpus files parsed at the same time (Default: 2)"},
+                {"", "-ram <MB>", "Memory used to buffer postings before writing a sub-index (Default: 256)"}};
 
         logger.info("Usage:");
         logger.info("Should choose one (and only one) of the following options (Index/Search):");
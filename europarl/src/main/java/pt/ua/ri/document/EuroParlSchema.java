@@ -1,67 +1,45 @@
 package pt.ua.ri.document;
 
-import com.google.common.base.Converter;
-import com.google.common.collect.BiMap;
-import com.google.common.collect.ImmutableBiMap;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
 import pt.ua.ri.reader.EuroParlFileParser;
 import pt.ua.ri.reader.FileParser;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Path;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Optional;
 import java.util.Set;
-import java.util.function.BiPredicate;
-
-import static com.google.common.collect.ImmutableList.copyOf;
-import static com.google.common.collect.ImmutableList.toImmutableList;
-import static com.google.common.collect.Maps.toMap;
-import static com.google.common.collect.Maps.transformValues;
-import static java.util.Comparator.comparingInt;
-import static java.util.Objects.requireNonNull;
-import static java.util.Optional.ofNullable;
-import static pt.ua.ri.document.DocumentProperties.DELIMITER;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 
 
 /**
  * @author tiago.novo
  */
 public class EuroParlSchema extends DocumentSchema<EuroParlSchema> {
-    private static final Map<String, BiPredicate<DocumentProperties<EuroParlSchema>, String>> FIELD_CHECKER;
-    private static final EuroParlSchema INSTANCE;
-    private static final Converter<String, DocumentProperties<EuroParlSchema>> LINE_PARSER;
-
-    static {
-        final BiMap<String, Integer> FIELD_MAPPER = ImmutableBiMap.<String, Integer>builder().put("FILENAME", 0)
-                .put("CHAPTER_ID", 1)
-                .put("SPEAKER_ID", 2)
-                .put("SPEAKER_NAME", 3)
-                .put("DATE", 4)
-                .put("LANGUAGE", 5)
-                .build();
-
-        FIELD_CHECKER = toMap(FIELD_MAPPER.keySet(), FieldChecker::new);
-
-        INSTANCE = new EuroParlSchema(FIELD_MAPPER.keySet());
-
-        LINE_PARSER = new Converter<String, DocumentProperties<EuroParlSchema>>() {
-            @Override protected DocumentProperties<EuroParlSchema> doForward(final String line) {
-                final List<String> split = copyOf(line.split(DELIMITER, FIELD_MAPPER.size()));
-                return new DocumentProperties<>(INSTANCE, transformValues(FIELD_MAPPER,
-                        value -> ofNullable(split.get(requireNonNull(value))).map(String::toLowerCase).orElse("")));
-            }
-
-            @Override protected String doBackward(final DocumentProperties<EuroParlSchema> properties) {
-                return properties.propertiesToString(FIELD_MAPPER.entrySet()
-                        .stream()
-                        .sorted(comparingInt(Entry::getValue))
-                        .map(Entry::getKey)
-                        .collect(toImmutableList()));
-            }
-        };
+    private static final EuroParlSchema INSTANCE = new EuroParlSchema(
+            ImmutableSet.of("FILENAME", "CHAPTER_ID", "SPEAKER_ID", "SPEAKER_NAME", "DATE", "LANGUAGE"));
+
+    // sittings start in 1996, so two digit years below this are in the 2000s
+    private static final int CENTURY_PIVOT = 50;
+    private static final Pattern SHORT_DATE = Pattern.compile("[0-9]{2}-[0-9]{2}-[0-9]{2}");
+    private static final Pattern NUMBER = Pattern.compile("[0-9]+");
+    private static final int NUMBER_DIGITS = 10;
+
+    /**
+     * Dates, {@code YY-MM-DD} like the ones taken from file names, become {@code YYYY-MM-DD}; any other bound, like a
+     * year or a year and month, is already in that form.
+     */
+    private static String dateKey(final String value) {
+        if (!SHORT_DATE.matcher(value).matches()) {
+            return value;
+        }
+        return (Integer.parseInt(value.substring(0, 2)) < CENTURY_PIVOT ? "20" : "19") + value;
+    }
 
+    private static String numberKey(final String value) {
+        return NUMBER.matcher(value).matches() ? Strings.padStart(value, NUMBER_DIGITS, '0') : value;
     }
 
     public static EuroParlSchema instance() {
@@ -72,8 +50,16 @@ public class EuroParlSchema extends DocumentSchema<EuroParlSchema> {
         super(fields);
     }
 
-    @Override public Map<String, BiPredicate<DocumentProperties<EuroParlSchema>, String>> fieldChecker() {
-        return FIELD_CHECKER;
+    @Override public Optional<Function<String, String>> rangeKey(final String field) {
+        switch (field) {
+            case "DATE":
+                return Optional.of(EuroParlSchema::dateKey);
+            case "CHAPTER_ID":
+            case "SPEAKER_ID":
+                return Optional.of(EuroParlSchema::numberKey);
+            default:
+                return Optional.empty();
+        }
     }
 
     @Override public FileParser<EuroParlSchema> fileParser(final Path path) {
@@ -84,8 +70,4 @@ public class EuroParlSchema extends DocumentSchema<EuroParlSchema> {
         }
     }
 
-    @Override public Converter<String, DocumentProperties<EuroParlSchema>> lineParser() {
-        return LINE_PARSER;
-    }
-
 }
@@ -11,131 +11,138 @@ import pt.ua.ri.document.EuroParlSchema;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.BiConsumer;
 
 /**
+ * Splits a Europarl file in one document per speaker intervention. Tags are recognised by a single pass over the
+ * header line, without regular expressions, and every other line is either text or skipped.
+ *
  * @author tiago.novo
  */
 public class EuroParlFileParser extends AbstractFileParser<EuroParlSchema> implements FileParser<EuroParlSchema> {
-    private final static String CHAPTER_TAG_START = "<CHAPTER";
-    private final static String SPEAKER_TAG_START = "<SPEAKER";
+    private final static String CHAPTER_TAG = "<CHAPTER";
+    private final static String SPEAKER_TAG = "<SPEAKER";
+    private final static String SPEAKER_PREFIX = "SPEAKER_";
+    private final static String LANGUAGE = "LANGUAGE";
     private final static Logger logger = LoggerFactory.getLogger(EuroParlFileParser.class);
-    private final Pattern regex = Pattern.compile("([A-Z]+)=(?:(?:\"(.*?)\")|([^ \"]+))[ >]");
+
+    /**
+     * @return whether {@code line} opens the tag {@code tag}, i.e. it is followed by a space or the end of the tag.
+     */
+    private static boolean isTag(final String line, final String tag) {
+        if (!line.startsWith(tag)) {
+            return false;
+        }
+        if (line.length() == tag.length()) {
+            return true;
+        }
+        final char next = line.charAt(tag.length());
+        return next == ' ' || next == '>';
+    }
+
+    private static boolean isDocumentBoundary(final String line) {
+        return isTag(line, SPEAKER_TAG) || isTag(line, CHAPTER_TAG);
+    }
 
     public EuroParlFileParser(Path path) throws IOException {
         super(path, EuroParlSchema.instance());
         properties.put("FILENAME", path.getFileName().toString());
         properties.put("DATE", properties.get("FILENAME").toString().substring(3, 11));
-        fetchNextDocument();
+        advance();
     }
 
     @Override protected void fetchNextDocument() {
-        logger.debug("Fetching next document from {}", properties.get("FILENAME"));
         nextDocument = null;
 
         while (lines.hasNext()) {
-            String line = lines.peek();
-            logger.debug("Checking: {}", line);
-            if (!line.isEmpty() && line.startsWith("<")) {
-                int idxOfSpace = line.indexOf(' ');
-                if (idxOfSpace >= 0) {
-                    String tagName = line.substring(1, idxOfSpace);
-                    if ("CHAPTER".equals(tagName)) {
-                        parseChapterHeader();
-                    } else if ("SPEAKER".equals(tagName)) {
-                        parseDocumentBody();
-                        break;
-                    }
-                }
-            }
-            if (lines.hasNext()) {
-                lines.next();
+            final String line = lines.next();
+            if (isTag(line, CHAPTER_TAG)) {
+                parseChapterHeader(line);
+            } else if (isTag(line, SPEAKER_TAG)) {
+                parseDocumentBody(line);
+                return;
             }
-
         }
     }
 
-    private void parseChapterHeader() {
-        String line = lines.next();
-        logger.debug("Parsing header starting at {}", line);
-
-        int start = 3 + line.indexOf("ID=", CHAPTER_TAG_START.length());
-        int end = line.length() - 2;
-        while (line.charAt(start) == '\"') {
-            start++;
-        }
-        while (line.charAt(end) == '\"') {
-            end--;
-        }
-
+    private void parseChapterHeader(final String line) {
+        final String[] chapterId = {""};
+        scanAttributes(line, CHAPTER_TAG.length(), (key, value) -> {
+            if ("ID".equals(key)) {
+                chapterId[0] = value;
+            }
+        });
 
-        final String chapterId = line.substring(start, end + 1);
         final StringBuilder title = new StringBuilder();
-        while (lines.hasNext()) {
-            String nextLine = lines.peek();
-            if (nextLine.startsWith("<") &&
-                (nextLine.startsWith(SPEAKER_TAG_START) || nextLine.startsWith(CHAPTER_TAG_START)))
-            {
-                logger.debug("Chapter title ended at: {} ", nextLine);
-                break;
-            } else {
-                title.append(lines.next()).append(' ');
-            }
+        while (lines.hasNext() && !isDocumentBoundary(lines.peek())) {
+            title.append(lines.next()).append(' ');
         }
-        //      logger.debug(chapterId);
-        //     logger.debug(title);
 
-        properties.put("CHAPTER_ID", chapterId);
+        properties.put("CHAPTER_ID", chapterId[0]);
         properties.put("CHAPTER_TITLE", title.toString());
-
     }
 
-    private void parseDocumentBody() {
-        final String line = lines.next();
-        final int idxOfSpace = line.indexOf(' ', SPEAKER_TAG_START.length());
-        logger.debug("Parsing document body starting at {} ", line);
-        final Matcher m = regex.matcher(line.substring(idxOfSpace, line.length() - 1));
-
-        if (m.find()) {
-            do {
-                try {
-                    String key = m.group(1).trim();
-                    String value = (m.group(2) != null ? m.group(2) : m.group(3)).trim();
-                    logger.debug("SPEAKER_{}: {}", key.toUpperCase(), value);
-                    properties.put("SPEAKER_" + key.toUpperCase(), value.trim().toUpperCase());
-                } catch (Exception ex) {
-                    logger.warn("Error at: {} on {}", m.group(0), line, ex);
-
-                    for (int i = 0; i <= m.groupCount(); i++) {
-                        logger.warn("GROUP[{}]={}", i, m.group(i));
-                    }
-                    throw ex;
-                }
-            } while (m.find());
-        } else {
-            logger.warn("No groups found on line {}", line);
-        }
+    private void parseDocumentBody(final String line) {
+        // the language is a field of its own in the schema, every other attribute describes the speaker
+        scanAttributes(line, SPEAKER_TAG.length(),
+                (key, value) -> properties.put(LANGUAGE.equals(key) ? LANGUAGE : SPEAKER_PREFIX + key,
+                        value.toUpperCase()));
 
         final ImmutableList.Builder<String> builder = ImmutableList.builder();
-
-
-        while (lines.hasNext()) {
-            String nextLine = lines.next();
-            if (!nextLine.startsWith("<")) {
+        // the next intervention's header is left for the following call
+        while (lines.hasNext() && !isDocumentBoundary(lines.peek())) {
+            final String nextLine = lines.next();
+            if (nextLine.isEmpty() || nextLine.charAt(0) != '<') {
                 builder.add(nextLine);
-            } else if ((nextLine.startsWith(SPEAKER_TAG_START) || nextLine.startsWith(CHAPTER_TAG_START))) {
-                logger.debug("Speaker intervention ended at {}", nextLine);
-                break;
-            } else {
-                logger.debug("Skipping {}", nextLine);
             }
-
         }
         final List<String> strings = builder.build();
-        logger.debug("Document Properties={} , lines={}", properties, strings);
         nextDocument = new Document<>(new DocumentProperties<>(getSchema(), ImmutableMap.copyOf(properties)), strings);
-        logger.debug("Created Document {}", nextDocument);
-        properties.keySet().removeIf(key -> key.startsWith("SPEAKER_"));
+        properties.keySet().removeIf(key -> key.startsWith(SPEAKER_PREFIX) || LANGUAGE.equals(key));
+    }
+
+    /**
+     * Single pass over the {@code KEY=value} and {@code KEY="quoted value"} attributes of a tag, starting at
+     * {@code from} and ending at the closing {@code >} or the end of the line. Values are trimmed.
+     */
+    private static void scanAttributes(final String line, final int from, final BiConsumer<String, String> consumer) {
+        final int length = line.length();
+        int i = from;
+        while (i < length) {
+            // key
+            while (i < length && line.charAt(i) == ' ') {
+                i++;
+            }
+            if (i >= length || line.charAt(i) == '>') {
+                return;
+            }
+            final int keyStart = i;
+            while (i < length && line.charAt(i) != '=' && line.charAt(i) != ' ' && line.charAt(i) != '>') {
+                i++;
+            }
+            if (i >= length || line.charAt(i) != '=') {
+                logger.warn("Attribute without value in {}", line);
+                continue;
+            }
+            final String key = line.substring(keyStart, i).toUpperCase();
+            i++;
+
+            // value
+            final int valueStart;
+            final int valueEnd;
+            if (i < length && line.charAt(i) == '"') {
+                valueStart = i + 1;
+                final int quote = line.indexOf('"', valueStart);
+                valueEnd = quote < 0 ? length : quote;
+                i = valueEnd + 1;
+            } else {
+                valueStart = i;
+                while (i < length && line.charAt(i) != ' ' && line.charAt(i) != '>') {
+                    i++;
+                }
+                valueEnd = i;
+            }
+            consumer.accept(key, line.substring(valueStart, valueEnd).trim());
+        }
     }
 }